@@ -0,0 +1,66 @@
+package ch.epfl.labos.iu.orm.queryll2.path;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the bytes of the class files holding the code of lambdas. Many
+ * query lambdas are often defined in the same class, so the class file
+ * only needs to be loaded once for all of them.
+ *
+ * Class files are cached separately for each class loader used to find
+ * them, and the class files found by a class loader are discarded once the
+ * class loader is garbage collected. At most maxEntries class files are
+ * held for each class loader, with the least recently used ones being
+ * discarded first. The cache can be safely shared by many threads.
+ */
+class ClassFileCache
+{
+   static final int DEFAULT_MAX_ENTRIES = 256;
+
+   private final int maxEntries;
+
+   /**
+    * Maps class loaders to the class files they found. Guarded by the lock
+    * on this object.
+    */
+   private final Map<ClassLoader, Map<String, byte[]>> cachedClassFiles = new WeakHashMap<>();
+
+   ClassFileCache(int maxEntries)
+   {
+      this.maxEntries = maxEntries;
+   }
+
+   /**
+    * @return the cached class file or null if the class file isn't cached
+    */
+   synchronized byte[] findInCache(ClassLoader classLoader, String className)
+   {
+      Map<String, byte[]> classFiles = cachedClassFiles.get(classLoader);
+      if (classFiles == null) return null;
+      return classFiles.get(className);
+   }
+
+   synchronized void cacheClassFile(ClassLoader classLoader, String className, byte[] classFile)
+   {
+      Map<String, byte[]> classFiles = cachedClassFiles.get(classLoader);
+      if (classFiles == null)
+      {
+         classFiles = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest)
+            {
+               return size() > maxEntries;
+            }
+         };
+         cachedClassFiles.put(classLoader, classFiles);
+      }
+      classFiles.put(className, classFile);
+   }
+
+   synchronized void clear()
+   {
+      cachedClassFiles.clear();
+   }
+}
@@ -7,9 +7,8 @@ import org.jinq.rebased.org.objectweb.asm.Opcodes;
 import org.jinq.rebased.org.objectweb.asm.tree.AbstractInsnNode;
 import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
 import org.jinq.rebased.org.objectweb.asm.tree.JumpInsnNode;
-import org.jinq.rebased.org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.LabelNode;
 import org.jinq.rebased.org.objectweb.asm.tree.MethodNode;
-import org.jinq.rebased.org.objectweb.asm.tree.TableSwitchInsnNode;
 import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
 
 import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter;
@@ -38,6 +37,7 @@ public class CodePath
       AbstractInsnNode node;
       boolean isBranchTaken = false;
       boolean isBranch = false;
+      LabelNode switchTarget = null;
       static PathInstruction branch(AbstractInsnNode node, boolean branchTaken)
       {
          PathInstruction pi = new PathInstruction(node);
@@ -45,6 +45,12 @@ public class CodePath
          pi.isBranchTaken = branchTaken;
          return pi;
       }
+      static PathInstruction switchCase(AbstractInsnNode node, LabelNode target)
+      {
+         PathInstruction pi = new PathInstruction(node);
+         pi.switchTarget = target;
+         return pi;
+      }
    }
 
    // Methods for constructing code paths from a method (assumes there are no loops) 
@@ -56,8 +62,6 @@ public class CodePath
       AbstractInsnNode instruction = m.instructions.get(index);
       
       // TODO: various control-flow instructions that we don't currently handle
-      if (instruction instanceof LookupSwitchInsnNode) return false;
-      if (instruction instanceof TableSwitchInsnNode) return false;
       if (instruction.getOpcode() == Opcodes.JSR) return false;
       if (instruction.getOpcode() == Opcodes.RET) return false;
       
@@ -81,6 +85,17 @@ public class CodePath
             return false;
          previousInstructions.remove(previousInstructions.size() - 1);
       }
+      else if (SwitchConditions.isSwitch(instruction))
+      {
+         // Follow each of the different cases of the switch
+         for (LabelNode target: new SwitchConditions(instruction).targets())
+         {
+            previousInstructions.add(PathInstruction.switchCase(instruction, target));
+            if (!breakIntoPaths(paths, previousInstructions, m.instructions.indexOf(target), cfg, m, maxPaths))
+               return false;
+            previousInstructions.remove(previousInstructions.size() - 1);
+         }
+      }
       else if (cfg.succsOf(index) != null)
       {
          // Add the instruction to the path, recurse, then remove the instruction
@@ -117,11 +132,20 @@ public class CodePath
    public <T> PathAnalysis calculateReturnValueAndConditions(
          ClassNode cl, MethodNode m,
          final PathAnalysisMethodChecker methodChecker) throws AnalyzerException
+   {
+      return calculateReturnValueAndConditions(cl, m, methodChecker, null);
+   }
+   
+   public <T> PathAnalysis calculateReturnValueAndConditions(
+         ClassNode cl, MethodNode m,
+         final PathAnalysisMethodChecker methodChecker,
+         final ClassLoader alternateClassLoader) throws AnalyzerException
    {
       class ConditionRecorder implements BasicSymbolicInterpreter.BranchHandler
       {
-         List<TypedValue.ComparisonValue> conditions = new ArrayList<TypedValue.ComparisonValue>();
+         List<TypedValue> conditions = new ArrayList<TypedValue>();
          boolean isBranchTaken = false;
+         LabelNode switchTarget = null;
          public void ifInstruction(AbstractInsnNode insn,
                                    TypedValue.ComparisonValue ifTrueValue)
          {
@@ -130,6 +154,12 @@ public class CodePath
             else
                conditions.add(ifTrueValue.inverseValue());
          }
+         public void switchInstruction(AbstractInsnNode insn, TypedValue key) throws AnalyzerException
+         {
+            TypedValue condition = new SwitchConditions(insn).conditionForTarget(insn, key, switchTarget, alternateClassLoader);
+            if (condition != null)
+               conditions.add(condition);
+         }
       }
       ConditionRecorder pathConditions = new ConditionRecorder();
       BasicSymbolicInterpreter interpreter = new SymbolicInterpreterWithFieldAccess(Opcodes.ASM5);
@@ -137,6 +167,7 @@ public class CodePath
       interpreter.setFrameForAliasingFixups(frame);
       interpreter.setBranchHandler(pathConditions);
       interpreter.setMethodChecker(methodChecker);
+      interpreter.setAlternateClassLoader(alternateClassLoader);
       
       for (PathInstruction instruction: path)
       {
@@ -145,11 +176,12 @@ public class CodePath
          
          if (instruction.isBranch)
             pathConditions.isBranchTaken = instruction.isBranchTaken;
+         pathConditions.switchTarget = instruction.switchTarget;
          frame.execute(instruction.node, interpreter);
       }
       
       TypedValue returnValue = interpreter.returnValue;
-      List<TypedValue.ComparisonValue> conditions = pathConditions.conditions;
+      List<TypedValue> conditions = pathConditions.conditions;
       
       PathAnalysis toReturn = new PathAnalysis(interpreter.sideEffects, returnValue, conditions);
       return toReturn;
@@ -0,0 +1,249 @@
+package ch.epfl.labos.iu.orm.queryll2.path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jinq.rebased.org.objectweb.asm.Opcodes;
+import org.jinq.rebased.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
+import org.jinq.rebased.org.objectweb.asm.tree.JumpInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.LabelNode;
+import org.jinq.rebased.org.objectweb.asm.tree.MethodNode;
+import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
+
+import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.FrameWithHelpers;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.SymbolicInterpreterWithFieldAccess;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+
+/**
+ * Symbolically executes all the paths through a method together instead of
+ * breaking the method into separate paths first. Methods made up of a
+ * sequence of independent if statements (e.g. a filter with many optional
+ * conditions) have a number of paths that grows exponentially with the
+ * number of if statements, but the different paths usually come back
+ * together with the same values on the stack and in the local variables.
+ * When that happens, the paths are merged into a single path whose
+ * condition is the disjunction of the conditions of the merged paths.
+ *
+ * Paths are only merged when all their values are the same, so merged
+ * paths never need conditional values. Paths that return different values
+ * or that have different side-effects are kept separate.
+ */
+class CodePathMerger
+{
+   /**
+    * The symbolic state of one or more paths that have reached the same
+    * instruction.
+    */
+   static class State
+   {
+      State(FrameWithHelpers frame, List<TypedValue> conditions, List<MethodSideEffect> sideEffects)
+      {
+         this.frame = frame;
+         this.conditions = conditions;
+         this.sideEffects = sideEffects;
+      }
+      final FrameWithHelpers frame;
+      final List<TypedValue> conditions;
+      final List<MethodSideEffect> sideEffects;
+
+      State copy()
+      {
+         return new State(new FrameWithHelpers(frame),
+               new ArrayList<>(conditions), new ArrayList<>(sideEffects));
+      }
+
+      boolean canMergeWith(State other)
+      {
+         return frame.hasSameValues(other.frame) && sideEffects.equals(other.sideEffects);
+      }
+   }
+
+   /**
+    * Analyzes a method that has no loops by merging paths where they meet.
+    * @return the analysis results or null if the method could not be
+    *    analyzed or if it has more than maxPaths paths even after merging
+    */
+   static <T, U> U analyzeMethod(ClassNode cl, MethodNode m, CFG cfg, PathAnalysisSupplementalFactory<T, U> pathAnalysisFactory, int maxPaths, ClassLoader alternateClassLoader) throws AnalyzerException
+   {
+      int numInstructions = m.instructions.size();
+
+      // Instructions are executed in topological order, so all the paths
+      // leading to an instruction have been merged before executing it
+      int[] numPreds = new int[numInstructions];
+      for (int n = 0; n < numInstructions; n++)
+      {
+         if (cfg.succsOf(n) == null) continue;
+         for (int succ: cfg.succsOf(n))
+            numPreds[succ]++;
+      }
+      List<Integer> ready = new ArrayList<>();
+      ready.add(0);
+
+      List<List<State>> pendingStates = new ArrayList<>(numInstructions);
+      for (int n = 0; n < numInstructions; n++)
+         pendingStates.add(new ArrayList<>());
+
+      final TypedValue.ComparisonValue[] branchCondition = new TypedValue.ComparisonValue[1];
+      final TypedValue[] switchKey = new TypedValue[1];
+      BasicSymbolicInterpreter interpreter = new SymbolicInterpreterWithFieldAccess(Opcodes.ASM5);
+      interpreter.setBranchHandler(new BasicSymbolicInterpreter.BranchHandler() {
+         @Override public void ifInstruction(AbstractInsnNode insn, TypedValue.ComparisonValue ifTrueValue)
+         {
+            branchCondition[0] = ifTrueValue;
+         }
+         @Override public void switchInstruction(AbstractInsnNode insn, TypedValue key)
+         {
+            switchKey[0] = key;
+         }
+      });
+      PathAnalysisMethodChecker methodChecker = pathAnalysisFactory.createMethodChecker();
+      interpreter.setMethodChecker(methodChecker);
+      interpreter.setAlternateClassLoader(alternateClassLoader);
+      pendingStates.get(0).add(new State(new FrameWithHelpers(cl, m, interpreter), new ArrayList<>(), new ArrayList<>()));
+
+      U analysis = pathAnalysisFactory.createMethodAnalysisResults();
+      int numPaths = 0;
+      while (!ready.isEmpty())
+      {
+         int index = ready.remove(ready.size() - 1);
+         List<State> states = pendingStates.get(index);
+         pendingStates.set(index, null);
+         AbstractInsnNode instruction = m.instructions.get(index);
+
+         if (instruction.getOpcode() == Opcodes.JSR) return null;
+         if (instruction.getOpcode() == Opcodes.RET) return null;
+
+         List<Integer> succs = cfg.succsOf(index);
+         boolean isBranch = instruction instanceof JumpInsnNode && instruction.getOpcode() != Opcodes.GOTO;
+         int nextIndex = index + 1;
+         int branchIndex = index + 1;
+         if (isBranch)
+         {
+            for (int next: succs)
+               if (next != nextIndex)
+                  branchIndex = next;
+         }
+
+         for (State state: states)
+         {
+            // Skip "fake" instructions like Frame, LineNumber, and Label
+            if (instruction.getOpcode() >= 0)
+            {
+               interpreter.setFrameForAliasingFixups(state.frame);
+               interpreter.sideEffects = state.sideEffects;
+               interpreter.returnValue = null;
+               branchCondition[0] = null;
+               switchKey[0] = null;
+               state.frame.execute(instruction, interpreter);
+            }
+
+            if (isBranch)
+            {
+               State branchState = state.copy();
+               branchState.conditions.add(branchCondition[0]);
+               state.conditions.add(branchCondition[0].inverseValue());
+               // If the branch goes to the next instruction, both states 
+               // are queued there and merged back together
+               addState(pendingStates.get(branchIndex), branchState);
+               addState(pendingStates.get(nextIndex), state);
+            }
+            else if (SwitchConditions.isSwitch(instruction))
+            {
+               SwitchConditions switchConditions = new SwitchConditions(instruction);
+               for (LabelNode target: switchConditions.targets())
+               {
+                  State caseState = state.copy();
+                  TypedValue condition = switchConditions.conditionForTarget(instruction, switchKey[0], target, alternateClassLoader);
+                  if (condition != null)
+                     caseState.conditions.add(condition);
+                  addState(pendingStates.get(m.instructions.indexOf(target)), caseState);
+               }
+            }
+            else if (succs != null)
+            {
+               addState(pendingStates.get(succs.get(0)), state);
+            }
+            else
+            {
+               // We've reached the end of a path, so record it
+               pathAnalysisFactory.addPath(analysis, state.sideEffects, interpreter.returnValue, state.conditions, methodChecker);
+               numPaths++;
+               if (numPaths > maxPaths)
+                  return null;
+            }
+         }
+
+         if (succs != null)
+         {
+            for (int succ: succs)
+            {
+               if (pendingStates.get(succ).size() > maxPaths)
+                  return null;
+               numPreds[succ]--;
+               if (numPreds[succ] == 0)
+                  ready.add(succ);
+            }
+         }
+      }
+      return analysis;
+   }
+
+   /**
+    * Adds a state to the states waiting at an instruction, merging it with
+    * a waiting state if possible.
+    */
+   static void addState(List<State> states, State newState)
+   {
+      for (int n = 0; n < states.size(); n++)
+      {
+         State state = states.get(n);
+         if (state.canMergeWith(newState))
+         {
+            states.set(n, new State(state.frame, mergeConditions(state.conditions, newState.conditions), state.sideEffects));
+            return;
+         }
+      }
+      states.add(newState);
+   }
+
+   /**
+    * Creates a condition that holds whenever either of two lists of
+    * conditions holds. Conditions at the start of both lists come from
+    * the same branches, so they are kept as is, and only the remaining
+    * conditions are joined with OR.
+    */
+   static List<TypedValue> mergeConditions(List<TypedValue> a, List<TypedValue> b)
+   {
+      int common = 0;
+      while (common < a.size() && common < b.size() && a.get(common).equals(b.get(common)))
+         common++;
+      List<TypedValue> merged = new ArrayList<>(a.subList(0, common));
+      List<TypedValue> restA = a.subList(common, a.size());
+      List<TypedValue> restB = b.subList(common, b.size());
+      // If one of the paths has no extra conditions, then the conditions of
+      // the other path add nothing
+      if (restA.isEmpty() || restB.isEmpty())
+         return merged;
+
+      // Simplify (x OR (NOT x AND y)) to (x OR y)
+      if (restA.size() == 1 && restB.get(0).equals(TypedValue.NotValue.invert(restA.get(0))))
+         restB = restB.subList(1, restB.size());
+      else if (restB.size() == 1 && restA.get(0).equals(TypedValue.NotValue.invert(restB.get(0))))
+         restA = restA.subList(1, restA.size());
+      if (restA.isEmpty() || restB.isEmpty())
+         return merged;
+
+      merged.add(TypedValue.LogicalOpValue.or(and(restA), and(restB)));
+      return merged;
+   }
+
+   private static TypedValue and(List<TypedValue> conditions)
+   {
+      TypedValue result = conditions.get(0);
+      for (int n = 1; n < conditions.size(); n++)
+         result = TypedValue.LogicalOpValue.and(result, conditions.get(n));
+      return result;
+   }
+}
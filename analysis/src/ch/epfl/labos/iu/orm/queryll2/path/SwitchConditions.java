@@ -0,0 +1,153 @@
+package ch.epfl.labos.iu.orm.queryll2.path;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jinq.rebased.org.objectweb.asm.Type;
+import org.jinq.rebased.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.LabelNode;
+import org.jinq.rebased.org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
+
+import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.ConstantValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+
+/**
+ * Describes the branches of a switch instruction as conditions on the
+ * value being switched on. Switches on ints compare the int with the
+ * keys of the switch cases. Switches on enums look up the ordinal of the
+ * enum in a switch map created by javac, so they are converted into
+ * comparisons of the enum with the enum constants of each case.
+ */
+class SwitchConditions
+{
+   /**
+    * Holds the case keys and their labels of a switch instruction
+    */
+   final List<Integer> keys = new ArrayList<>();
+   final List<LabelNode> labels = new ArrayList<>();
+   final LabelNode defaultLabel;
+
+   SwitchConditions(AbstractInsnNode insn)
+   {
+      if (insn instanceof TableSwitchInsnNode)
+      {
+         TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode)insn;
+         for (int n = 0; n < tableSwitch.labels.size(); n++)
+         {
+            keys.add(tableSwitch.min + n);
+            labels.add(tableSwitch.labels.get(n));
+         }
+         defaultLabel = tableSwitch.dflt;
+      }
+      else
+      {
+         LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode)insn;
+         keys.addAll(lookupSwitch.keys);
+         labels.addAll(lookupSwitch.labels);
+         defaultLabel = lookupSwitch.dflt;
+      }
+   }
+
+   static boolean isSwitch(AbstractInsnNode insn)
+   {
+      return insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode;
+   }
+
+   /**
+    * @return the different labels that the switch can jump to
+    */
+   List<LabelNode> targets()
+   {
+      List<LabelNode> targets = new ArrayList<>();
+      for (LabelNode label: labels)
+         if (!targets.contains(label))
+            targets.add(label);
+      if (!targets.contains(defaultLabel))
+         targets.add(defaultLabel);
+      return targets;
+   }
+
+   /**
+    * Creates the condition that must hold for the switch to jump to the
+    * given label.
+    * @return the condition or null if the switch always jumps to the label
+    */
+   TypedValue conditionForTarget(AbstractInsnNode insn, TypedValue key, LabelNode target, ClassLoader alternateClassLoader) throws AnalyzerException
+   {
+      // The default case is taken when none of the other cases are taken
+      boolean isDefault = (target == defaultLabel);
+      List<TypedValue> comparisons = new ArrayList<>();
+      for (int n = 0; n < keys.size(); n++)
+      {
+         if (isDefault && labels.get(n) != defaultLabel)
+            comparisons.addAll(keyComparisons(insn, key, keys.get(n), TypedValue.ComparisonValue.ComparisonOp.ne, alternateClassLoader));
+         else if (!isDefault && labels.get(n) == target)
+            comparisons.addAll(keyComparisons(insn, key, keys.get(n), TypedValue.ComparisonValue.ComparisonOp.eq, alternateClassLoader));
+      }
+      if (comparisons.isEmpty())
+      {
+         // A case that does not handle any enum constants is never taken
+         return isDefault ? null : new ConstantValue.BooleanConstant(false);
+      }
+      TypedValue condition = comparisons.get(0);
+      for (int n = 1; n < comparisons.size(); n++)
+      {
+         if (isDefault)
+            condition = TypedValue.LogicalOpValue.and(condition, comparisons.get(n));
+         else
+            condition = TypedValue.LogicalOpValue.or(condition, comparisons.get(n));
+      }
+      return condition;
+   }
+
+   private static List<TypedValue> keyComparisons(AbstractInsnNode insn, TypedValue key, int caseKey, TypedValue.ComparisonValue.ComparisonOp op, ClassLoader alternateClassLoader) throws AnalyzerException
+   {
+      List<TypedValue> comparisons = new ArrayList<>();
+      if (key instanceof TypedValue.SwitchMapValue)
+      {
+         TypedValue.SwitchMapValue switchMap = (TypedValue.SwitchMapValue)key;
+         for (String enumConstant: findEnumConstantsForCase(insn, switchMap, caseKey, alternateClassLoader))
+         {
+            TypedValue constantValue = new TypedValue.GetStaticFieldValue(switchMap.enumOwner, enumConstant, Type.getObjectType(switchMap.enumOwner).getDescriptor());
+            comparisons.add(new TypedValue.ComparisonValue(op, switchMap.operand, constantValue));
+         }
+      }
+      else
+         comparisons.add(new TypedValue.ComparisonValue(op, key, new ConstantValue.IntegerConstant(caseKey)));
+      return comparisons;
+   }
+
+   /**
+    * Reads the switch map created by javac to find the enum constants
+    * that are handled by a case of the switch. The switch map and enum 
+    * are usually defined alongside the lambda, so they may only be 
+    * visible to the alternate class loader.
+    */
+   private static List<String> findEnumConstantsForCase(AbstractInsnNode insn, TypedValue.SwitchMapValue switchMap, int caseKey, ClassLoader alternateClassLoader) throws AnalyzerException
+   {
+      try
+      {
+         Class<?> switchMapClass = BasicSymbolicInterpreter.loadClass(Type.getObjectType(switchMap.switchMapOwner).getClassName(), alternateClassLoader);
+         Field switchMapField = switchMapClass.getDeclaredField(switchMap.switchMapName);
+         switchMapField.setAccessible(true);
+         int[] caseForOrdinal = (int[])switchMapField.get(null);
+         Class<?> enumClass = BasicSymbolicInterpreter.loadClass(Type.getObjectType(switchMap.enumOwner).getClassName(), alternateClassLoader);
+         List<String> enumConstants = new ArrayList<>();
+         for (Object enumConstant: enumClass.getEnumConstants())
+         {
+            int ordinal = ((Enum<?>)enumConstant).ordinal();
+            if (ordinal < caseForOrdinal.length && caseForOrdinal[ordinal] == caseKey)
+               enumConstants.add(((Enum<?>)enumConstant).name());
+         }
+         return enumConstants;
+      }
+      catch (ReflectiveOperationException | RuntimeException e)
+      {
+         throw new AnalyzerException(insn, "Cannot read the switch map " + switchMap.switchMapName, e);
+      }
+   }
+}
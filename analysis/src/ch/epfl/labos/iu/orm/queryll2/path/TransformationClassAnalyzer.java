@@ -1,5 +1,6 @@
 package ch.epfl.labos.iu.orm.queryll2.path;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -20,6 +21,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jinq.rebased.org.objectweb.asm.ClassReader;
+import org.jinq.rebased.org.objectweb.asm.FieldVisitor;
+import org.jinq.rebased.org.objectweb.asm.MethodVisitor;
+import org.jinq.rebased.org.objectweb.asm.Opcodes;
 import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
 import org.jinq.rebased.org.objectweb.asm.tree.MethodNode;
 import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
@@ -373,12 +377,25 @@ public class TransformationClassAnalyzer
       KnownSafeMethods.add(bigIntegerDoubleValue);
    }
    
-   ClassNode cl = new ClassNode();
+   /**
+    * Class files of lambdas that have been analyzed, so that they don't 
+    * have to be loaded again when analyzing other lambdas of the same class
+    */
+   static final ClassFileCache classFileCache = new ClassFileCache(ClassFileCache.DEFAULT_MAX_ENTRIES);
+   
+   final ClassReader reader;
+   
+   /**
+    * Used for loading the classes referred to by the code being analyzed
+    * when they can't be found by Jinq's own class loader 
+    */
+   final ClassLoader alternateClassLoader;
+   
    public TransformationClassAnalyzer(File f) throws IOException
    {
+      alternateClassLoader = null;
       FileInputStream fis = new FileInputStream(f);
-      ClassReader reader = new ClassReader(fis);
-      reader.accept(cl,0);
+      reader = new ClassReader(fis);
       fis.close();
    }
 
@@ -389,30 +406,61 @@ public class TransformationClassAnalyzer
 
    public TransformationClassAnalyzer(String className, ClassLoader alternateClassLoader) throws IOException
    {
-      ClassReader reader = null;
+      this.alternateClassLoader = alternateClassLoader;
+      byte[] classFile = classFileCache.findInCache(alternateClassLoader, className);
+      if (classFile == null)
+      {
+         classFile = readClassFile(className, alternateClassLoader);
+         classFileCache.cacheClassFile(alternateClassLoader, className, classFile);
+      }
+      // Only the header of the class is parsed here. Methods are parsed
+      // when they are analyzed.
+      reader = new ClassReader(classFile);
+   }
+   
+   private static byte[] readClassFile(String className, ClassLoader alternateClassLoader) throws IOException
+   {
+      String classFileName = className.replace(".", "/") + ".class";
+      InputStream classStream = ClassLoader.getSystemResourceAsStream(classFileName);
+      // The system class loader didn't work. Try using our own 
+      // class loader to load the class instead
+      if (classStream == null)
+         classStream = TransformationClassAnalyzer.class.getClassLoader().getResourceAsStream(classFileName);
+      // Try the alternate class loader if the user supplied one.
+      if (classStream == null && alternateClassLoader != null)
+         classStream = alternateClassLoader.getResourceAsStream(classFileName);
+      // TODO: Ideally, we should find the classloader of the lambda itself,
+      // and use that to load the class file of the lambda.
+      if (classStream == null)
+         throw new IOException("Class not found");
       try {
-         reader = new ClassReader(className);
-      } 
-      catch (IOException e)
+         ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         for (int n = classStream.read(buffer); n >= 0; n = classStream.read(buffer))
+            classFile.write(buffer, 0, n);
+         return classFile.toByteArray();
+      }
+      finally
       {
-         // The system class loader didn't work. Try using our own 
-         // class loader to load the class instead
-         String classFileName = className.replace(".", "/") + ".class";
-         InputStream classStream = this.getClass().getClassLoader().getResourceAsStream(classFileName);
-         // Try the alternate class loader if the user supplied one.
-         if (classStream == null && alternateClassLoader != null)
-            classStream = alternateClassLoader.getResourceAsStream(classFileName);
-         reader = new ClassReader(classStream);
-         // TODO: Ideally, we should find the classloader of the lambda itself,
-         // and use that to load the class file of the lambda.
+         classStream.close();
       }
-      reader.accept(cl,0);
+   }
+   
+   /**
+    * Removes all the class files that have been cached by the analyzer.
+    */
+   public static void clearClassFileCache()
+   {
+      classFileCache.clear();
    }
    
    public <T, U> void analyze(StaticMethodAnalysisStorage analysisResults, PathAnalysisSupplementalFactory<T, U> pathAnalysisFactory)
    {
       // TODO: Analyze the constructor
       
+      ClassNode cl = new ClassNode();
+      reader.accept(cl, 0);
+      
       // Find the method containing the transformation code
       List<String> interfacesAndParent = new ArrayList<String>();
       interfacesAndParent.addAll((List<String>)cl.interfaces);
@@ -445,7 +493,7 @@ public class TransformationClassAnalyzer
          // method always passes control directly to the specific version
          try {
 //            System.out.println(specificMethod.name + " " + specificMethod.signature + " " + specificMethod.desc);
-            U analysis = analyzeMethod(specificMethod, pathAnalysisFactory);
+            U analysis = analyzeMethod(cl, specificMethod, pathAnalysisFactory);
             if (analysis != null)
             {
                analysisResults.storeMethodAnalysis(i, cl.name, analysis);
@@ -460,19 +508,39 @@ public class TransformationClassAnalyzer
 
    public <T, U> U analyzeLambdaMethod(String methodName, String methodSignature, PathAnalysisSupplementalFactory<T, U> pathAnalysisFactory) throws AnalyzerException
    {
-      MethodNode specificMethod = null;
-      for (MethodNode m: (List<MethodNode>)cl.methods)
-      {
-         if (!m.name.equals(methodName) || !m.desc.equals(methodSignature))
-            continue;
-         specificMethod = m;
-      }
-      if (specificMethod != null)
-         return analyzeMethod(specificMethod, pathAnalysisFactory);
+      ClassNode cl = parseMethod(methodName, methodSignature);
+      if (!cl.methods.isEmpty())
+         return analyzeMethod(cl, cl.methods.get(0), pathAnalysisFactory);
       return null;
    }
    
-   <T, U> U analyzeMethod(MethodNode m, PathAnalysisSupplementalFactory<T, U> pathAnalysisFactory) throws AnalyzerException
+   /**
+    * Parses the header of the class and the code of a single method of the
+    * class. The other methods and fields of the class are skipped. Debug 
+    * information isn't used by the analysis, so it is skipped too.
+    */
+   private ClassNode parseMethod(String methodName, String methodSignature)
+   {
+      ClassNode cl = new ClassNode(Opcodes.ASM9) {
+         @Override
+         public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value)
+         {
+            return null;
+         }
+         
+         @Override
+         public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions)
+         {
+            if (!name.equals(methodName) || !descriptor.equals(methodSignature))
+               return null;
+            return super.visitMethod(access, name, descriptor, signature, exceptions);
+         }
+      };
+      reader.accept(cl, ClassReader.SKIP_DEBUG);
+      return cl;
+   }
+   
+   <T, U> U analyzeMethod(ClassNode cl, MethodNode m, PathAnalysisSupplementalFactory<T, U> pathAnalysisFactory) throws AnalyzerException
    {
       // TODO: Various checks (e.g. no try/catch blocks, exceptions, etc.)
       if (m.tryCatchBlocks.size() > 0) return null;
@@ -492,8 +560,11 @@ public class TransformationClassAnalyzer
       
       // Break the code into paths
       List<CodePath> paths = CodePath.breakIntoPaths(cfg, m, cl.name, MAX_PATHS);
+      
+      // If there are too many paths, try merging paths where they come 
+      // back together instead
       if (paths == null)
-         return null;
+         return CodePathMerger.analyzeMethod(cl, m, cfg, pathAnalysisFactory, MAX_PATHS, alternateClassLoader);
       
       // Symbolically execute each path to figure out what each path does
       U analysis = pathAnalysisFactory.createMethodAnalysisResults();
@@ -502,7 +573,7 @@ public class TransformationClassAnalyzer
          PathAnalysisMethodChecker methodChecker = pathAnalysisFactory.createMethodChecker();
 
          PathAnalysis pathResults = 
-            path.calculateReturnValueAndConditions(cl, m, methodChecker);
+            path.calculateReturnValueAndConditions(cl, m, methodChecker, alternateClassLoader);
          pathAnalysisFactory.addPath(analysis, pathResults.sideEffects, pathResults.returnValue, pathResults.conditions, methodChecker);
       }
       return analysis;
@@ -44,6 +44,7 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
    public static interface BranchHandler
    {
       void ifInstruction(AbstractInsnNode insn, TypedValue.ComparisonValue ifTrueValue);
+      void switchInstruction(AbstractInsnNode insn, TypedValue key) throws AnalyzerException;
    }
    BranchHandler branchHandler;
    public void setBranchHandler(BranchHandler branchHandler)
@@ -77,6 +78,14 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
       this.methodChecker = methodChecker;
    }
    
+   // Class loader for finding classes that Jinq's own class loader can't
+   // see (e.g. the enums used by the lambda being analyzed)
+   ClassLoader alternateClassLoader;
+   public void setAlternateClassLoader(ClassLoader alternateClassLoader)
+   {
+      this.alternateClassLoader = alternateClassLoader;
+   }
+   
    // Stuff that is called during the symbolic interpretation by Frame
    
    public Value newArg(Type type, int argumentIndex)
@@ -236,6 +245,9 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
          case I2S:
          case TABLESWITCH: 
          case LOOKUPSWITCH: 
+            if (branchHandler != null)
+               branchHandler.switchInstruction(insn, (TypedValue)value);
+            return null;
          case PUTSTATIC:
          case NEWARRAY: 
          case ANEWARRAY: 
@@ -293,6 +305,20 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
          case LREM: 
             return new TypedValue.MathOpValue(TypedValue.MathOpValue.Op.mod, Type.INT_TYPE, (TypedValue)value1, (TypedValue)value2);
          case IALOAD:
+         {
+            // The only supported array is the switch map that javac uses 
+            // for switching on enums
+            if (value1 instanceof TypedValue.GetStaticFieldValue
+                  && ((TypedValue.GetStaticFieldValue)value1).name.startsWith("$SwitchMap$")
+                  && value2 instanceof MethodCallValue.VirtualMethodCallValue
+                  && isEnumOrdinal(((MethodCallValue.VirtualMethodCallValue)value2).getSignature()))
+            {
+               TypedValue.GetStaticFieldValue switchMap = (TypedValue.GetStaticFieldValue)value1;
+               MethodCallValue.VirtualMethodCallValue ordinal = (MethodCallValue.VirtualMethodCallValue)value2;
+               return new TypedValue.SwitchMapValue(switchMap.owner, switchMap.name, ordinal.owner, ordinal.base);
+            }
+            throw new AnalyzerException(insn, "Unhandled bytecode instruction");
+         }
          case LALOAD: 
          case FALOAD: 
          case DALOAD: 
@@ -364,6 +390,9 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
                if (methodChecker != null)
                {
                   OperationSideEffect sideEffect = methodChecker.isMethodSafe(sig, base, args); 
+                  // Switching on an enum needs the ordinal of the enum
+                  if (sideEffect == OperationSideEffect.UNSAFE && isEnumOrdinal(sig))
+                     sideEffect = OperationSideEffect.NONE;
                   if (sideEffect == OperationSideEffect.UNSAFE)
                      throw new AnalyzerException(insn, "Unknown method " + sig + " encountered");
                   else if (sideEffect == OperationSideEffect.SAFE)
@@ -434,6 +463,35 @@ public class BasicSymbolicInterpreter extends InterpreterWithArgs implements Opc
       }
    }
 
+   boolean isEnumOrdinal(MethodSignature sig)
+   {
+      if (!"ordinal".equals(sig.name) || !"()I".equals(sig.desc)) 
+         return false;
+      try
+      {
+         return loadClass(sig.getOwnerType().getClassName(), alternateClassLoader).isEnum();
+      } catch (ClassNotFoundException e)
+      {
+         return false;
+      }
+   }
+   
+   /**
+    * Loads a class using Jinq's own class loader or, if the class 
+    * can't be found there, using the alternate class loader. 
+    */
+   public static Class<?> loadClass(String className, ClassLoader alternateClassLoader) throws ClassNotFoundException
+   {
+      try
+      {
+         return Class.forName(className, false, BasicSymbolicInterpreter.class.getClassLoader());
+      } catch (ClassNotFoundException e)
+      {
+         if (alternateClassLoader == null) throw e;
+         return Class.forName(className, false, alternateClassLoader);
+      }
+   }
+
    public Value ifOperation(AbstractInsnNode insn, Value value1, 
                             Value value2) throws AnalyzerException
    {
@@ -1,5 +1,7 @@
 package ch.epfl.labos.iu.orm.queryll2.symbolic;
 
+import java.util.Objects;
+
 import org.jinq.rebased.org.objectweb.asm.Opcodes;
 import org.jinq.rebased.org.objectweb.asm.Type;
 import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
@@ -66,6 +68,27 @@ public class FrameWithHelpers extends Frame
 //      merge(0, current, null);
    }
    
+   // Creates a copy of a frame
+   public FrameWithHelpers(FrameWithHelpers frame)
+   {
+      super(frame);
+   }
+   
+   // Checks whether two frames hold the same values in all their locals 
+   // and stack entries
+   public boolean hasSameValues(FrameWithHelpers other)
+   {
+      if (getLocals() != other.getLocals() || getStackSize() != other.getStackSize())
+         return false;
+      for (int n = 0; n < getLocals(); n++)
+         if (!Objects.equals(getLocal(n), other.getLocal(n)))
+            return false;
+      for (int n = 0; n < getStackSize(); n++)
+         if (!Objects.equals(getStack(n), other.getStack(n)))
+            return false;
+      return true;
+   }
+   
    // There may be aliased values in the stack. This helper method
    // scans through the stack and updates aliased values to new values.
    // Since this is used for aliasing of reference types, you shouldn't
@@ -401,6 +401,72 @@ public class TypedValue implements Value
          return true;
       }
    }
+   /**
+    * The value read from the switch map that javac creates for switching
+    * on an enum. The switch map holds the switch case for each ordinal of 
+    * the enum. The operand is the enum value being switched on.
+    */
+   public static class SwitchMapValue extends UnaryOperationValue
+   {
+      public String switchMapOwner;
+      public String switchMapName;
+      public String enumOwner;
+      public SwitchMapValue(String switchMapOwner, String switchMapName, String enumOwner, TypedValue enumValue)
+      {
+         super(Type.INT_TYPE, enumValue);
+         this.switchMapOwner = switchMapOwner;
+         this.switchMapName = switchMapName;
+         this.enumOwner = enumOwner;
+      }
+      public String toString()
+      {
+         return "(" + switchMapName + "[" + operand + "])";
+      }
+      @Override public SwitchMapValue withNewChildren(TypedValue newOperand)
+      {
+         return new SwitchMapValue(switchMapOwner, switchMapName, enumOwner, newOperand);
+      }
+      @Override
+      public int hashCode()
+      {
+         final int prime = 31;
+         int result = super.hashCode();
+         result = prime * result + ((switchMapOwner == null) ? 0 : switchMapOwner.hashCode());
+         result = prime * result + ((switchMapName == null) ? 0 : switchMapName.hashCode());
+         result = prime * result + ((enumOwner == null) ? 0 : enumOwner.hashCode());
+         return result;
+      }
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (this == obj)
+            return true;
+         if (!super.equals(obj))
+            return false;
+         if (getClass() != obj.getClass())
+            return false;
+         SwitchMapValue other = (SwitchMapValue) obj;
+         if (switchMapOwner == null)
+         {
+            if (other.switchMapOwner != null)
+               return false;
+         } else if (!switchMapOwner.equals(other.switchMapOwner))
+            return false;
+         if (switchMapName == null)
+         {
+            if (other.switchMapName != null)
+               return false;
+         } else if (!switchMapName.equals(other.switchMapName))
+            return false;
+         if (enumOwner == null)
+         {
+            if (other.enumOwner != null)
+               return false;
+         } else if (!enumOwner.equals(other.enumOwner))
+            return false;
+         return true;
+      }
+   }
    public static class CastValue extends UnaryOperationValue
    {
       public CastValue(Type castedType, TypedValue base)
@@ -636,4 +702,37 @@ public class TypedValue implements Value
          return true;
       }
    }
+   /**
+    * Boolean AND or OR of two conditions. These values are not created when
+    * interpreting individual instructions. They are used for combining the
+    * conditions of different paths through a method that are analyzed 
+    * together.
+    */
+   public static class LogicalOpValue extends BinaryOperationValue
+   {
+      private LogicalOpValue(String operation, TypedValue left, TypedValue right)
+      {
+         super(Type.BOOLEAN_TYPE, operation, left, right);
+      }
+      public static LogicalOpValue and(TypedValue left, TypedValue right)
+      {
+         return new LogicalOpValue("AND", left, right);
+      }
+      public static LogicalOpValue or(TypedValue left, TypedValue right)
+      {
+         return new LogicalOpValue("OR", left, right);
+      }
+      public boolean isAnd()
+      {
+         return "AND".equals(operation);
+      }
+      @Override public <I,O,E extends Exception> O visit(TypedValueVisitor<I,O,E> visitor, I input) throws E
+      {
+         return visitor.logicalOpValue(this, input);
+      }
+      @Override public LogicalOpValue withNewChildren(TypedValue newLeft, TypedValue newRight)
+      {
+         return new LogicalOpValue(operation, newLeft, newRight);
+      }
+   }
 }
@@ -110,6 +110,10 @@ public abstract class TypedValueVisitor<I, O, E extends Exception>
    {
       return binaryOpValue(val, in);
    }
+   public O logicalOpValue(TypedValue.LogicalOpValue val, I in) throws E
+   {
+      return binaryOpValue(val, in);
+   }
    
    public O methodCallValue(MethodCallValue val, I in) throws E
    {
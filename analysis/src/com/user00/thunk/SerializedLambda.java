@@ -10,6 +10,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 
 public class SerializedLambda implements Serializable {
@@ -19,10 +22,48 @@ public class SerializedLambda implements Serializable {
     public String implMethodName;
     public String implMethodSignature;
     public int implMethodKind;
-    
+
     private final static byte[] serializedLambdaString = "java.lang.invoke.SerializedLambda".getBytes(StandardCharsets.US_ASCII);
     private final static byte[] serializedLambdaStringReplacement = "com.user00.thunk.SerializedLambda".getBytes(StandardCharsets.US_ASCII);
-    
+
+    /**
+     * Information about a lambda class that is the same for all lambda
+     * objects of that class.
+     */
+    private static class LambdaClassInfo
+    {
+      LambdaClassInfo(MethodHandle writeReplace)
+      {
+        this.writeReplace = writeReplace;
+      }
+      /**
+       * Handle to the synthetic writeReplace() method that serializable lambdas
+       * use to create a java.lang.invoke.SerializedLambda, or null if the class
+       * doesn't have an accessible writeReplace() method.
+       */
+      final MethodHandle writeReplace;
+      /**
+       * Holds the implementation method of the lambda (but not the captured
+       * arguments) once a lambda of this class has been extracted.
+       */
+      volatile SerializedLambda implMethod;
+    }
+
+    private static final ClassValue<LambdaClassInfo> lambdaClassInfo = new ClassValue<LambdaClassInfo>() {
+      @Override protected LambdaClassInfo computeValue(Class<?> type)
+      {
+        try {
+          Method m = type.getDeclaredMethod("writeReplace");
+          m.setAccessible(true);
+          return new LambdaClassInfo(MethodHandles.lookup().unreflect(m));
+        } catch (Exception e) {
+          // Lambdas in modules that aren't open to Jinq will throw an
+          // InaccessibleObjectException here
+          return new LambdaClassInfo(null);
+        }
+      }
+    };
+
     private static void substituteSerializedLambda(byte[] data)
     {
       byte[] toMatch = serializedLambdaString;
@@ -45,6 +86,59 @@ public class SerializedLambda implements Serializable {
     }
 
     public static SerializedLambda extractLambda(Object lambda) throws Exception
+    {
+      SerializedLambda s = extractLambdaWithWriteReplace(lambda);
+      if (s != null)
+        return s;
+      return extractLambdaBySerialization(lambda);
+    }
+
+    /**
+     * Reads the contents of a lambda by directly calling the writeReplace()
+     * method that the Java serialization framework would call. This avoids
+     * the overhead of actually serializing the lambda.
+     * @return the contents of the lambda or null if they couldn't be read
+     *    this way
+     */
+    static SerializedLambda extractLambdaWithWriteReplace(Object lambda)
+    {
+      LambdaClassInfo info = lambdaClassInfo.get(lambda.getClass());
+      if (info.writeReplace == null)
+        return null;
+      Object replacement;
+      try {
+        replacement = info.writeReplace.invoke(lambda);
+      } catch (Throwable e) {
+        return null;
+      }
+      if (!(replacement instanceof java.lang.invoke.SerializedLambda))
+        return null;
+      java.lang.invoke.SerializedLambda serialized = (java.lang.invoke.SerializedLambda)replacement;
+
+      // The implementation method is the same for all lambdas of a class,
+      // so only the captured arguments need to be copied each time
+      SerializedLambda implMethod = info.implMethod;
+      if (implMethod == null)
+      {
+        implMethod = new SerializedLambda();
+        implMethod.implClass = serialized.getImplClass();
+        implMethod.implMethodName = serialized.getImplMethodName();
+        implMethod.implMethodSignature = serialized.getImplMethodSignature();
+        implMethod.implMethodKind = serialized.getImplMethodKind();
+        info.implMethod = implMethod;
+      }
+      SerializedLambda s = new SerializedLambda();
+      s.implClass = implMethod.implClass;
+      s.implMethodName = implMethod.implMethodName;
+      s.implMethodSignature = implMethod.implMethodSignature;
+      s.implMethodKind = implMethod.implMethodKind;
+      s.capturedArgs = new Object[serialized.getCapturedArgCount()];
+      for (int n = 0; n < s.capturedArgs.length; n++)
+        s.capturedArgs[n] = serialized.getCapturedArg(n);
+      return s;
+    }
+
+    static SerializedLambda extractLambdaBySerialization(Object lambda) throws Exception
     {
       try {
         ByteArrayOutputStream byteOut = new ByteArrayOutputStream(2000);
@@ -64,6 +158,6 @@ public class SerializedLambda implements Serializable {
       } catch(Exception e) {
         throw new Exception(e);
       }
-      
+
     }
 }
@@ -0,0 +1,150 @@
+package ch.epfl.labos.iu.orm.queryll2.path;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter.OperationSideEffect;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+
+public class TransformationClassAnalyzerTest
+{
+   private static final String CLASS_NAME = "ch.epfl.labos.iu.orm.queryll2.path.TransformationClassAnalyzerTest";
+
+   private static PathAnalysisFactory createPathAnalysisFactory()
+   {
+      return new PathAnalysisFactory(
+            new PathAnalysisMethodChecker() {
+               @Override
+               public boolean isFluentChaining(MethodSignature m)
+               {
+                  return false;
+               }
+
+               @Override
+               public boolean isPutFieldAllowed()
+               {
+                  return false;
+               }
+
+               @Override
+               public OperationSideEffect isStaticMethodSafe(MethodSignature m)
+               {
+                  return OperationSideEffect.NONE;
+               }
+
+               @Override
+               public OperationSideEffect isMethodSafe(MethodSignature m,
+                     TypedValue base, List<TypedValue> args)
+               {
+                  return OperationSideEffect.NONE;
+               }
+            });
+   }
+
+   @Test
+   public void testClassFileCached() throws IOException
+   {
+      TransformationClassAnalyzer.clearClassFileCache();
+      new TransformationClassAnalyzer(CLASS_NAME);
+      byte[] classFile = TransformationClassAnalyzer.classFileCache.findInCache(null, CLASS_NAME);
+      Assert.assertNotNull(classFile);
+      new TransformationClassAnalyzer(CLASS_NAME);
+      Assert.assertSame(classFile, TransformationClassAnalyzer.classFileCache.findInCache(null, CLASS_NAME));
+   }
+
+   @Test
+   public void testAnalyzeSingleMethod() throws IOException, AnalyzerException
+   {
+      TransformationClassAnalyzer analyzer = new TransformationClassAnalyzer(CLASS_NAME);
+      MethodAnalysisResults analysis = analyzer.analyzeLambdaMethod("isPositive", "(I)Z", createPathAnalysisFactory());
+      Assert.assertEquals(2, analysis.paths.size());
+      MethodAnalysisResults otherAnalysis = analyzer.analyzeLambdaMethod("negate", "(I)I", createPathAnalysisFactory());
+      Assert.assertEquals(1, otherAnalysis.paths.size());
+      Assert.assertNull(analyzer.analyzeLambdaMethod("negate", "(J)J", createPathAnalysisFactory()));
+   }
+
+   @Test
+   public void testAnalyzeMergedPaths() throws IOException, AnalyzerException
+   {
+      TransformationClassAnalyzer analyzer = new TransformationClassAnalyzer(CLASS_NAME);
+      MethodAnalysisResults analysis = analyzer.analyzeLambdaMethod("isAtLeastAll", "(IIIIIIII)Z", createPathAnalysisFactory());
+      // The paths returning true and the paths returning false are merged
+      Assert.assertEquals(2, analysis.paths.size());
+   }
+
+   @Test
+   public void testAnalyzeMergedPathsBranchToNext() throws IOException, AnalyzerException
+   {
+      TransformationClassAnalyzer analyzer = new TransformationClassAnalyzer(CLASS_NAME);
+      MethodAnalysisResults analysis = analyzer.analyzeLambdaMethod("isAtLeastAllAfterEmptyIf", "(IIIIIIII)Z", createPathAnalysisFactory());
+      MethodAnalysisResults expected = analyzer.analyzeLambdaMethod("isAtLeastAll", "(IIIIIIII)Z", createPathAnalysisFactory());
+      // Both sides of the empty if statement are kept and merged again
+      Assert.assertEquals(expected.paths.size(), analysis.paths.size());
+      for (int n = 0; n < expected.paths.size(); n++)
+         Assert.assertEquals(expected.paths.get(n).getConditions().toString(), analysis.paths.get(n).getConditions().toString());
+   }
+
+   @Test
+   public void testAnalyzeSwitch() throws IOException, AnalyzerException
+   {
+      TransformationClassAnalyzer analyzer = new TransformationClassAnalyzer(CLASS_NAME);
+      MethodAnalysisResults analysis = analyzer.analyzeLambdaMethod("classify", "(I)I", createPathAnalysisFactory());
+      Assert.assertEquals(3, analysis.paths.size());
+      Assert.assertEquals("((@arg0 == 1) OR (@arg0 == 2))", analysis.paths.get(0).getConditions().get(0).toString());
+   }
+
+   public static int classify(int a)
+   {
+      switch (a)
+      {
+         case 1:
+         case 2:
+            return 10;
+         case 5:
+            return 20;
+         default:
+            return 0;
+      }
+   }
+
+   public static boolean isAtLeastAll(int x, int a, int b, int c, int d, int e, int f, int g)
+   {
+      return (a == 0 || x >= a)
+            && (b == 0 || x >= b)
+            && (c == 0 || x >= c)
+            && (d == 0 || x >= d)
+            && (e == 0 || x >= e)
+            && (f == 0 || x >= f)
+            && (g == 0 || x >= g);
+   }
+
+   public static boolean isAtLeastAllAfterEmptyIf(int x, int a, int b, int c, int d, int e, int f, int g)
+   {
+      // Compiles to a branch whose target is the next instruction
+      if (x == 0)
+      {
+      }
+      return (a == 0 || x >= a)
+            && (b == 0 || x >= b)
+            && (c == 0 || x >= c)
+            && (d == 0 || x >= d)
+            && (e == 0 || x >= e)
+            && (f == 0 || x >= f)
+            && (g == 0 || x >= g);
+   }
+
+   public static boolean isPositive(int a)
+   {
+      return a > 0;
+   }
+
+   public static int negate(int a)
+   {
+      return -a;
+   }
+}
@@ -0,0 +1,41 @@
+package com.user00.thunk;
+
+import java.io.Serializable;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerializedLambdaTest
+{
+   interface SerializableFunction<T, U> extends Function<T, U>, Serializable {}
+
+   private static SerializableFunction<String, Boolean> makeLambda(String name, int length)
+   {
+      return s -> s.equals(name) && s.length() == length;
+   }
+
+   @Test
+   public void testWriteReplaceMatchesSerialization() throws Exception
+   {
+      Object lambda = makeLambda("Alice", 5);
+      SerializedLambda fast = SerializedLambda.extractLambdaWithWriteReplace(lambda);
+      SerializedLambda slow = SerializedLambda.extractLambdaBySerialization(lambda);
+      Assert.assertNotNull(fast);
+      Assert.assertEquals(slow.implClass, fast.implClass);
+      Assert.assertEquals(slow.implMethodName, fast.implMethodName);
+      Assert.assertEquals(slow.implMethodSignature, fast.implMethodSignature);
+      Assert.assertEquals(slow.implMethodKind, fast.implMethodKind);
+      Assert.assertArrayEquals(slow.capturedArgs, fast.capturedArgs);
+   }
+
+   @Test
+   public void testCapturedArgsReadPerLambda() throws Exception
+   {
+      SerializedLambda first = SerializedLambda.extractLambda(makeLambda("Alice", 5));
+      SerializedLambda second = SerializedLambda.extractLambda(makeLambda("Bob", 3));
+      Assert.assertEquals(first.implMethodName, second.implMethodName);
+      Assert.assertArrayEquals(new Object[] {"Alice", 5}, first.capturedArgs);
+      Assert.assertArrayEquals(new Object[] {"Bob", 3}, second.capturedArgs);
+   }
+}
@@ -15,6 +15,13 @@ public interface QueryComposer<T>
    // Actually executes the query and returns the results in an iterator
    public Iterator<T> executeAndReturnResultIterator(Consumer<Throwable> exceptionReporter);
    
+   // Whether the results of the query should be returned as a parallel 
+   // stream so that they can be processed by several threads
+   public default boolean isParallelResults()
+   {
+      return false;
+   }
+   
    // Returns a new query with the given operation integrated in
    // (or returns null if the given operation cannot be integrated)
    public <V extends Comparable<V>> QueryComposer<T> sortedBy(
@@ -26,6 +33,19 @@ public interface QueryComposer<T>
    // New stuff for Queryll2
    public <E extends Exception> QueryComposer<T> where(Object test);
    public <E extends Exception> QueryComposer<T> whereWithSource(Object test);
+   
+   // Returns a new query that filters out the data that fails the parts of
+   // the test that can be integrated into the query. The results of the 
+   // query still need to be filtered with the full test afterwards. Returns
+   // null if no part of the test can be integrated into the query.
+   public default <E extends Exception> QueryComposer<T> wherePartially(Object test)
+   {
+      return null;
+   }
+   public default <E extends Exception> QueryComposer<T> whereWithSourcePartially(Object test)
+   {
+      return null;
+   }
    public <U> QueryComposer<U> select(Object select);
    public <U> QueryComposer<U> selectWithSource(Object select);
    public <U> QueryComposer<U> selectAll(Object select);
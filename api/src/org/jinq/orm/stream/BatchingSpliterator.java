@@ -0,0 +1,149 @@
+package org.jinq.orm.stream;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterator for the results of a query that are read from an iterator. 
+ * Spliterators.spliteratorUnknownSize() does not split well when the 
+ * elements are processed in parallel since it gives out batches of 
+ * increasing size. This spliterator gives out batches of a fixed size 
+ * instead, and each batch is read into an array, so the size of the batch 
+ * is known and it can be split further.
+ * 
+ * The iterator is only ever read by one thread at a time, so the iterator
+ * does not need to be thread-safe. Query result iterators are often tied
+ * to the thread that made the query though (e.g. an EntityManager fetching
+ * the next page of results), so streams that will be processed in parallel
+ * should be created with stream(), which only reads the iterator on the 
+ * thread that runs the stream.
+ */
+public class BatchingSpliterator<T> implements Spliterator<T>
+{
+   public static final int DEFAULT_BATCH_SIZE = 256;
+   
+   final int batchSize;
+   final int characteristics;
+   
+   /**
+    * Thread that is allowed to read batches of results in trySplit(), or
+    * null if batches can be read by any thread
+    */
+   final Thread owner;
+   
+   Iterator<? extends T> it;
+   
+   /**
+    * Once the iterator has been handed over to another spliterator, this
+    * spliterator only holds a single batch of results
+    */
+   Spliterator<T> batch;
+   
+   int splitCount = 0;
+   boolean isExhausted = false;
+   
+   public BatchingSpliterator(Iterator<? extends T> it, int batchSize, int characteristics)
+   {
+      this(it, batchSize, characteristics, null);
+   }
+
+   public BatchingSpliterator(Iterator<? extends T> it, int characteristics)
+   {
+      this(it, DEFAULT_BATCH_SIZE, characteristics);
+   }
+
+   private BatchingSpliterator(Iterator<? extends T> it, int batchSize, int characteristics, Thread owner)
+   {
+      this.it = it;
+      this.batchSize = batchSize;
+      this.characteristics = characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+      this.owner = owner;
+   }
+
+   /**
+    * Creates a stream of the results read from an iterator. For a 
+    * parallel stream, batches of results are only read by the thread that 
+    * starts the terminal operation of the stream, and only the processing
+    * of those batches is split over other threads. 
+    */
+   public static <T> Stream<T> stream(Iterator<? extends T> it, int characteristics, boolean isParallel)
+   {
+      if (!isParallel)
+         return StreamSupport.stream(new BatchingSpliterator<>(it, characteristics), false);
+      return StreamSupport.stream(
+            () -> new BatchingSpliterator<>(it, DEFAULT_BATCH_SIZE, characteristics, Thread.currentThread()), 
+            characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED),
+            true);
+   }
+   
+   @Override
+   public boolean tryAdvance(Consumer<? super T> action)
+   {
+      if (batch != null) return batch.tryAdvance(action);
+      if (!it.hasNext())
+      {
+         isExhausted = true;
+         return false;
+      }
+      action.accept(it.next());
+      return true;
+   }
+
+   @Override
+   public void forEachRemaining(Consumer<? super T> action)
+   {
+      if (batch != null)
+      {
+         batch.forEachRemaining(action);
+         return;
+      }
+      while (it.hasNext())
+         action.accept(it.next());
+      isExhausted = true;
+   }
+
+   @Override
+   public Spliterator<T> trySplit()
+   {
+      if (batch != null) return batch.trySplit();
+      if (owner != null && owner != Thread.currentThread()) return null;
+      Object[] read = new Object[batchSize];
+      int count = 0;
+      while (count < batchSize && it.hasNext())
+         read[count++] = it.next();
+      if (count < batchSize) isExhausted = true;
+      if (count == 0) return null;
+      Spliterator<T> readBatch = Spliterators.spliterator(read, 0, count, characteristics);
+      splitCount++;
+      if ((characteristics & Spliterator.ORDERED) != 0 || splitCount % 2 == 1)
+         return readBatch;
+      // Parallel streams keep the right half of one split and the left 
+      // half of the next split while forking the other half to another 
+      // thread. On every second split, the iterator is moved to the 
+      // returned spliterator so that it stays with the splitting thread.
+      BatchingSpliterator<T> rest = new BatchingSpliterator<>(it, batchSize, characteristics, owner);
+      rest.splitCount = splitCount;
+      rest.isExhausted = isExhausted;
+      it = null;
+      batch = readBatch;
+      return rest;
+   }
+
+   @Override
+   public long estimateSize()
+   {
+      if (batch != null) return batch.estimateSize();
+      return isExhausted ? 0 : Long.MAX_VALUE;
+   }
+
+   @Override
+   public int characteristics()
+   {
+      if (batch != null) return batch.characteristics();
+      return characteristics;
+   }
+}
@@ -2,6 +2,8 @@ package org.jinq.orm.stream;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -12,7 +14,11 @@ import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -119,104 +125,85 @@ public class NonQueryJinqStream<T> extends LazyWrappedStream<T> implements JinqS
    @Override
    public <U> JinqStream<Pair<T, U>> join(Join<T,U> join)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         join.join(left).forEach( right -> 
-            { streamBuilder.accept(new Pair<>(left, right)); });
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> 
+         join.join(left).map( right -> new Pair<>(left, right) )));
    }
 
    @Override
    public <U> JinqStream<Pair<T, U>> join(JoinWithSource<T,U> join)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         join.join(left, inQueryStreamSource).forEach( right -> 
-            { streamBuilder.accept(new Pair<>(left, right)); });
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> 
+         join.join(left, inQueryStreamSource).map( right -> new Pair<>(left, right) )));
    }
 
    @Override
    public <U> JinqStream<Pair<T, U>> joinList(
          org.jinq.orm.stream.JinqStream.JoinToIterable<T, U> join)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         for (U right: join.join(left)) {
-             streamBuilder.accept(new Pair<>(left, right)); 
-         }});
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> 
+         StreamSupport.stream(join.join(left).spliterator(), false)
+            .map( right -> new Pair<>(left, right) )));
    }
 
+   /**
+    * Pairs an element with each of the elements it is joined with, or 
+    * with null if it isn't joined with any elements. The joined elements
+    * are only read as the resulting stream is read.
+    */
+   private static <T, U> Stream<Pair<T, U>> pairOuterJoined(T left, Iterator<U> joined)
+   {
+      if (!joined.hasNext())
+         return Stream.of(new Pair<>(left, null));
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(joined, 0), false)
+            .map( right -> new Pair<>(left, right) );
+   }
+   
    @Override
    public <U> JinqStream<Pair<T, U>> leftOuterJoin(Join<T,U> join)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         if (join.join(left).count() > 0)
-            join.join(left).forEach( right -> 
-               { streamBuilder.accept(new Pair<>(left, right)); });
-         else
-            streamBuilder.accept(new Pair<>(left, null));
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> {
+         JinqStream<U> joined = join.join(left);
+         return pairOuterJoined(left, joined.iterator()).onClose(joined::close);
+      }));
    }
 
    @Override
    public <U> JinqStream<Pair<T, U>> leftOuterJoinList(
          org.jinq.orm.stream.JinqStream.JoinToIterable<T, U> join)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         int count = 0;
-         for (U right: join.join(left)) {
-            streamBuilder.accept(new Pair<>(left, right));
-            count++;
-         }
-         if (count == 0)
-            streamBuilder.accept(new Pair<>(left, null));
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> pairOuterJoined(left, join.join(left).iterator()) ));
    }
 
    @Override
    public <U> JinqStream<Pair<T, U>> leftOuterJoin(JoinWithSource<T, U> join, WhereForOn<T, U> on)
    {
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         AtomicBoolean wasMatched = new AtomicBoolean();
-         join.join(left, inQueryStreamSource).forEach( right -> {
-            if (on.where(left, right))
-            {
-               wasMatched.set(true);
-               streamBuilder.accept(new Pair<>(left, right));
-            }
-         });
-         if (!wasMatched.get())
-            streamBuilder.accept(new Pair<>(left, null));
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> {
+         JinqStream<U> joined = join.join(left, inQueryStreamSource);
+         Iterator<U> matched = joined.filter( right -> on.where(left, right) ).iterator();
+         return pairOuterJoined(left, matched).onClose(joined::close);
+      }));
    }
 
    @Override
    public <U> JinqStream<Pair<T, U>> crossJoin(JinqStream<U> join)
    {
       List<U> saved = join.toList();
-      // TODO: This stream should be constructed on the fly
-      final Stream.Builder<Pair<T,U>> streamBuilder = Stream.builder();
-      forEach( left -> {
-         saved.stream().forEach( right -> 
-            streamBuilder.accept(new Pair<>(left, right)));
-         });
-      return wrap(streamBuilder.build());
+      return wrap(flatMap( left -> 
+         saved.stream().map( right -> new Pair<>(left, right) )));
+   }
+   
+   @Override
+   public <U, K> JinqStream<Pair<T, U>> hashJoin(Collection<U> joined, 
+         Select<T, K> leftKey, Select<U, K> rightKey)
+   {
+      Map<K, List<U>> table = new HashMap<>();
+      for (U right: joined)
+         table.computeIfAbsent(rightKey.select(right), key -> new ArrayList<>()).add(right);
+      return wrap(flatMap( left -> {
+         List<U> matches = table.get(leftKey.select(left));
+         if (matches == null) return Stream.empty();
+         return matches.stream().map( right -> new Pair<>(left, right) );
+      }));
    }
    
    protected <U, W extends Tuple> JinqStream<W> groupToTuple(Select<T, U> select, AggregateGroup<U, T, ?>[] aggregates)
@@ -594,108 +581,229 @@ public class NonQueryJinqStream<T> extends LazyWrappedStream<T> implements JinqS
       return multiaggregate(aggregates);
    }
 
+   /**
+    * Pool of daemon threads used for running aggregates in parallel. The
+    * threads are reused so that a new thread doesn't have to be created
+    * for each aggregate.
+    */
+   private static final ExecutorService aggregateExecutor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "Jinq aggregate");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private JinqStream<T> wrapIterator(Iterator<T> it)
+   {
+      return wrap(StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(it, Spliterator.CONCURRENT), 
+            false));
+   }
+   
    <U extends Tuple> U multiaggregate(AggregateSelect<T, ?>[] aggregates)
    {
       IteratorTee<T> tee = new IteratorTee<>(this, aggregates.length);
       
       // Run each aggregator in a separate thread so that we can
       // use producer-consumer queues and hence avoid using too much
-      // memory.
-      Thread [] aggregateThreads = new Thread[aggregates.length];
+      // memory. The first aggregate runs in the current thread, which
+      // also reads the input and hands it to the other aggregates.
       final Object [] results = new Object[aggregates.length];
-      for (int n = 0; n < aggregates.length; n++)
+      List<Future<?>> aggregateTasks = new ArrayList<>();
+      for (int n = 1; n < aggregates.length; n++)
       {
          final int idx = n;
          final AggregateSelect<T, ?> fn = aggregates[idx];
-         aggregateThreads[n] = new Thread() {
-            @Override public void run()
+         aggregateTasks.add(aggregateExecutor.submit(() -> {
+            Iterator<T> it = tee.createIterator(idx);
+            try {
+               results[idx] = fn.aggregateSelect(wrapIterator(it));
+            }
+            finally
             {
-               JinqStream<T> stream = 
-                     wrap(StreamSupport.stream(
-                           Spliterators.spliteratorUnknownSize(
-                                 tee.createIterator(idx), 
-                                 Spliterator.CONCURRENT), 
-                           false));
-               results[idx] = fn.aggregateSelect(stream);
+               // The input can't move forward if any aggregate stops 
+               // taking elements, so read any remaining elements
+               while (it.hasNext()) it.next();
             }
-         };
-         aggregateThreads[n].start();
+         }));
       }
-      for (int n = 0; n < aggregateThreads.length; n++)
-      {
+      Iterator<T> it = tee.createIterator(0);
+      try {
          try {
-            aggregateThreads[n].join();
-         } catch (InterruptedException e)
+            results[0] = aggregates[0].aggregateSelect(wrapIterator(it));
+         }
+         finally
          {
-            Thread.currentThread().interrupt();
+            while (it.hasNext()) it.next();
          }
+         for (Future<?> task: aggregateTasks)
+         {
+            try {
+               task.get();
+            } 
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               throw IteratorTee.cancelled(e);
+            }
+            catch (ExecutionException e)
+            {
+               if (e.getCause() instanceof RuntimeException)
+                  throw (RuntimeException)e.getCause();
+               if (e.getCause() instanceof Error)
+                  throw (Error)e.getCause();
+               throw new RuntimeException(e.getCause());
+            }
+         }
+      }
+      catch (RuntimeException | Error e)
+      {
+         // Stop the other aggregates so that none of them are left waiting
+         // for elements that will never come
+         tee.cancel();
+         for (Future<?> task: aggregateTasks)
+            task.cancel(true);
+         throw e;
       }
       return Tuple.createTuple(results);
    }
    
+   /**
+    * Splits a stream so that it can be read by several iterators at once.
+    * The iterator with index 0 reads from the input stream and passes the 
+    * elements in batches to the other iterators, which should be read from
+    * other threads. To keep memory usage bounded, reading from the input
+    * blocks when the other iterators fall too far behind, so all the 
+    * iterators must be read to the end or the tee must be cancelled. 
+    * 
+    * If a thread reading from an iterator is interrupted, the tee is
+    * cancelled, and all the iterators throw a CancellationException 
+    * instead of returning incomplete results.
+    */
    public static class IteratorTee<T> 
    {
-      static final int MAX_QUEUE_SIZE = 100;
-      final Object DONE = new Object();
+      static final int MAX_QUEUE_SIZE = 8;
+      static final int BATCH_SIZE = 64;
+      static final Object[] DONE = new Object[0];
+      static final Object[] CANCELLED = new Object[0];
       
-      ArrayBlockingQueue<Object>[] outputQueues;
-      Stream<T> inputStream;
+      ArrayBlockingQueue<Object[]>[] outputQueues;
+      Iterator<T> input;
+      boolean isDone = false;
+      volatile boolean isCancelled = false;
+      @SuppressWarnings("unchecked")
       public IteratorTee(Stream<T> inputStream, int size)
       {
-         this.inputStream = inputStream;
+         this.input = inputStream.iterator();
          outputQueues = new ArrayBlockingQueue[size];
-         for (int n = 0; n < size; n++)
+         for (int n = 1; n < size; n++)
             outputQueues[n] = new ArrayBlockingQueue<>(MAX_QUEUE_SIZE);
       }
       
-      boolean isStarted = false;
-      synchronized void startInputStreamPump()
+      /**
+       * Reads a batch of elements from the input and passes it to the other
+       * iterators. 
+       * @return the batch of elements that were read or DONE if there are 
+       *    no more elements
+       */
+      Object[] readBatch()
       {
-         if (isStarted) return;
-         isStarted = true;
-         new Thread() {
-            @Override public void run()
+         if (isCancelled) throw cancelled(null);
+         if (isDone) return DONE;
+         Object[] batch = DONE;
+         try {
+            Object[] buffer = new Object[BATCH_SIZE];
+            int count = 0;
+            while (count < BATCH_SIZE && input.hasNext())
+               buffer[count++] = input.next();
+            if (count == BATCH_SIZE)
+               batch = buffer;
+            else if (count > 0)
+               batch = Arrays.copyOf(buffer, count);
+         }
+         finally
+         {
+            // If the input throws an exception, the other iterators are
+            // told that there are no more elements so that they don't wait
+            // forever
+            if (batch == DONE)
+               isDone = true;
+            // The batches are never modified after this, so they can be 
+            // shared by all the iterators
+            for (int n = 1; n < outputQueues.length; n++)
             {
-               inputStream.forEach( val -> {
-                  for (int n = 0; n < outputQueues.length; n++)
-                  {
-                     try {
-                        outputQueues[n].put(val);
-                     } catch (InterruptedException e)
-                     {
-                        Thread.currentThread().interrupt();
-                     }
-                  }
-               });
                try {
-                  for (int n = 0; n < outputQueues.length; n++)
-                     outputQueues[n].put(DONE);
+                  outputQueues[n].put(batch);
                } catch (InterruptedException e)
                {
+                  // Dropping the batch would give the other iterators 
+                  // incomplete results, so everything is stopped instead
+                  cancel();
                   Thread.currentThread().interrupt();
+                  throw cancelled(e);
                }
+               if (isCancelled) throw cancelled(null);
             }
-         }.start();
+         }
+         return batch;
+      }
+      
+      Object[] takeBatch(int idx)
+      {
+         if (isCancelled) throw cancelled(null);
+         Object[] batch;
+         try {
+            batch = outputQueues[idx].take();
+         } catch (InterruptedException e)
+         {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw cancelled(e);
+         }
+         if (batch == CANCELLED || isCancelled) throw cancelled(null);
+         return batch;
       }
+      
+      /**
+       * Stops all the iterators. Iterators waiting for elements or for 
+       * space to pass on elements are woken up, and all the iterators 
+       * throw a CancellationException from then on.
+       */
+      public void cancel()
+      {
+         isCancelled = true;
+         for (int n = 1; n < outputQueues.length; n++)
+         {
+            outputQueues[n].clear();
+            outputQueues[n].offer(CANCELLED);
+         }
+      }
+      
+      static CancellationException cancelled(InterruptedException cause)
+      {
+         CancellationException e = new CancellationException("The aggregates were cancelled");
+         if (cause != null) e.initCause(cause);
+         return e;
+      }
+      
       public Iterator<T> createIterator(int idx)
       {
          return new NextOnlyIterator<T>()
                {
+                  Object[] batch;
+                  int pos;
+                  @SuppressWarnings("unchecked")
                   @Override
                   protected void generateNext()
                   {
-                     startInputStreamPump();
-                     Object taken = DONE;
-                     try {
-                        taken = outputQueues[idx].take();
-                     } catch (InterruptedException e)
+                     if (batch == null || pos >= batch.length)
                      {
-                        Thread.currentThread().interrupt();
+                        batch = idx == 0 ? readBatch() : takeBatch(idx);
+                        pos = 0;
                      }
-                     if (taken == DONE)
+                     if (batch == DONE)
                         noMoreElements();
                      else
-                        nextElement((T)taken);
+                        nextElement((T)batch[pos++]);
                   }
                };
       }
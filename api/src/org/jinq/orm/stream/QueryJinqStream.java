@@ -2,10 +2,9 @@ package org.jinq.orm.stream;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import org.jinq.orm.internal.QueryComposer;
 import org.jinq.tuples.Pair;
@@ -32,11 +31,27 @@ public class QueryJinqStream<T> extends NonQueryJinqStream<T> implements JinqStr
    
    protected Stream<T> createWrappedStream() 
    {
-      return StreamSupport.stream(
-            Spliterators.spliteratorUnknownSize(
-                  queryComposer.executeAndReturnResultIterator( err -> propagateException(this, err) ), 
-                  Spliterator.CONCURRENT), 
-            false);
+      Iterator<T> results = queryComposer.executeAndReturnResultIterator( err -> propagateException(this, err) );
+      Stream<T> stream = BatchingSpliterator.stream(
+            results, 
+            Spliterator.CONCURRENT, 
+            queryComposer.isParallelResults());
+      // Results read through a database cursor should release the cursor
+      // when the stream is closed, even if not all results were read
+      if (results instanceof AutoCloseable)
+      {
+         AutoCloseable closeable = (AutoCloseable)results;
+         stream = stream.onClose(() -> {
+            try {
+               closeable.close();
+            }
+            catch (Exception e)
+            {
+               throw new IllegalStateException(e);
+            }
+         });
+      }
+      return stream;
    }
    
    @Override
@@ -44,6 +59,10 @@ public class QueryJinqStream<T> extends NonQueryJinqStream<T> implements JinqStr
    {
       QueryComposer<T> newComposer = queryComposer.where(test);
       if (newComposer != null) return makeQueryStream(newComposer, inQueryStreamSource);
+      // Filter out as much data as possible in the query and then run the 
+      // lambda on the remaining data
+      newComposer = queryComposer.wherePartially(test);
+      if (newComposer != null) return ((QueryJinqStream<T>)makeQueryStream(newComposer, inQueryStreamSource)).whereInMemory(test);
       return super.where(test);
    }
 
@@ -53,6 +72,23 @@ public class QueryJinqStream<T> extends NonQueryJinqStream<T> implements JinqStr
    {
       QueryComposer<T> newComposer = queryComposer.whereWithSource(test);
       if (newComposer != null) return makeQueryStream(newComposer, inQueryStreamSource);
+      newComposer = queryComposer.whereWithSourcePartially(test);
+      if (newComposer != null) return ((QueryJinqStream<T>)makeQueryStream(newComposer, inQueryStreamSource)).whereInMemory(test);
+      return super.where(test);
+   }
+   
+   /**
+    * Filters the results of the query in memory without trying to 
+    * translate the filter into a query.
+    */
+   protected <E extends Exception> JinqStream<T> whereInMemory(Where<T, E> test)
+   {
+      return super.where(test);
+   }
+
+   protected <E extends Exception> JinqStream<T> whereInMemory(
+         org.jinq.orm.stream.JinqStream.WhereWithSource<T, E> test)
+   {
       return super.where(test);
    }
    
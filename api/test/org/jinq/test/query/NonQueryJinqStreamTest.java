@@ -4,19 +4,28 @@ import static org.junit.Assert.*;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.jinq.orm.stream.BatchingSpliterator;
 import org.jinq.orm.stream.JinqStream;
 import org.jinq.orm.stream.NonQueryJinqStream;
 import org.jinq.tuples.Pair;
 import org.jinq.tuples.Tuple3;
+import org.jinq.tuples.Tuple4;
 
 public class NonQueryJinqStreamTest
 {
@@ -57,6 +66,42 @@ public class NonQueryJinqStreamTest
       assertEquals(5, result.getTwo().intValue());
       assertEquals(20, result.getThree().intValue());
    }
+
+   @Test
+   public void testAggregateManyElements()
+   {
+      JinqStream<Integer> stream = 
+            new NonQueryJinqStream<>(IntStream.range(0, 10000).boxed());
+      Tuple4<Long, Integer, Integer, Long> result = 
+            stream.aggregate((vals) -> vals.sumInteger(x -> x), 
+                  (vals) -> vals.min(x -> x),
+                  (vals) -> vals.max(x -> x),
+                  (vals) -> vals.count());
+      assertEquals(49995000L, result.getOne().longValue());
+      assertEquals(0, result.getTwo().intValue());
+      assertEquals(9999, result.getThree().intValue());
+      assertEquals(10000L, result.getFour().longValue());
+   }
+
+   @Test
+   public void testAggregatePartiallyRead()
+   {
+      JinqStream<Integer> stream = 
+            new NonQueryJinqStream<>(IntStream.range(0, 1000).boxed());
+      Pair<Integer, Long> result = 
+            stream.aggregate((vals) -> vals.findFirst().get(), 
+                  (vals) -> vals.count());
+      assertEquals(0, result.getOne().intValue());
+      assertEquals(1000L, result.getTwo().longValue());
+   }
+
+   @Test(expected=IllegalStateException.class)
+   public void testAggregateException()
+   {
+      new NonQueryJinqStream<>(IntStream.range(0, 1000).boxed())
+            .aggregate((vals) -> vals.count(), 
+                  (vals) -> { throw new IllegalStateException(); });
+   }
    
    @Test
    public void testSum()
@@ -85,6 +130,38 @@ public class NonQueryJinqStreamTest
       assertEquals(Arrays.asList(new Pair<>(0, null), new Pair<>(1, 1)), list);
    }
 
+   @Test
+   public void testJoinIsLazy()
+   {
+      List<Pair<Integer, Integer>> list = new NonQueryJinqStream<>(Stream.iterate(1, n -> n + 1))
+            .join(n -> JinqStream.from(Collections.<Integer>nCopies(2, n)))
+            .limit(3)
+            .toList();
+      assertEquals(Arrays.asList(new Pair<>(1, 1), new Pair<>(1, 1), new Pair<>(2, 2)), list);
+   }
+
+   @Test
+   public void testLeftOuterJoinEvaluatesJoinOnce()
+   {
+      int[] joinCount = new int[1];
+      List<Pair<Integer, Integer>> list = new NonQueryJinqStream<>(Stream.of(0, 2))
+            .leftOuterJoin(n -> { 
+               joinCount[0]++; 
+               return JinqStream.from(Collections.<Integer>nCopies(n, n)); 
+            }).toList(); 
+      assertEquals(Arrays.asList(new Pair<>(0, null), new Pair<>(2, 2), new Pair<>(2, 2)), list);
+      assertEquals(2, joinCount[0]);
+   }
+
+   @Test
+   public void testHashJoin()
+   {
+      List<Pair<Integer, String>> list = new NonQueryJinqStream<>(Stream.of(1, 2, 3))
+            .hashJoin(Arrays.asList("a", "bb", "cc", "dddd"), n -> n, s -> s.length())
+            .toList();
+      assertEquals(Arrays.asList(new Pair<>(1, "a"), new Pair<>(2, "bb"), new Pair<>(2, "cc")), list);
+   }
+
    @Test
    public void testFindOne()
    {
@@ -124,4 +201,64 @@ public class NonQueryJinqStreamTest
                   new Pair<>(2, null)
             }, vals);
    }
+   
+   @Test
+   public void testBatchingSpliteratorParallelReadsOnCallingThread()
+   {
+      Thread caller = Thread.currentThread();
+      Iterator<Integer> it = IntStream.range(0, 2000).iterator();
+      Iterator<Integer> checkedIt = new Iterator<Integer>() {
+         @Override public boolean hasNext()
+         {
+            assertSame(caller, Thread.currentThread());
+            return it.hasNext();
+         }
+         @Override public Integer next()
+         {
+            assertSame(caller, Thread.currentThread());
+            return it.next();
+         }
+      };
+      Stream<Integer> stream = BatchingSpliterator.stream(checkedIt, Spliterator.CONCURRENT, true);
+      assertTrue(stream.isParallel());
+      assertEquals(2000, (long)stream.map(val -> val * 2).collect(Collectors.toList()).size());
+   }
+   
+   @Test
+   public void testBatchingSpliteratorParallelReadsLazily() throws InterruptedException
+   {
+      // Reading stalls after the first few batches until a match is found,
+      // so the match must come from processing batches while they are read
+      CountDownLatch found = new CountDownLatch(1);
+      AtomicInteger read = new AtomicInteger();
+      Iterator<Integer> it = IntStream.range(0, 100000).iterator();
+      Iterator<Integer> slowIt = new Iterator<Integer>() {
+         @Override public boolean hasNext()
+         {
+            if (read.get() == 1000)
+            {
+               try {
+                  found.await(10, TimeUnit.SECONDS);
+               }
+               catch (InterruptedException e)
+               {
+                  throw new IllegalStateException(e);
+               }
+            }
+            return it.hasNext();
+         }
+         @Override public Integer next()
+         {
+            read.incrementAndGet();
+            return it.next();
+         }
+      };
+      Stream<Integer> stream = BatchingSpliterator.stream(slowIt, Spliterator.CONCURRENT, true);
+      assertTrue(stream.anyMatch(val -> {
+         if (val != 5) return false;
+         found.countDown();
+         return true;
+      }));
+      assertTrue(read.get() < 100000);
+   }
 }
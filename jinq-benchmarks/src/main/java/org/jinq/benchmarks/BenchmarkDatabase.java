@@ -0,0 +1,82 @@
+package org.jinq.benchmarks;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+
+import org.jinq.jpa.JinqJPAStreamProvider;
+import org.jinq.jpa.test.entities.Customer;
+import org.jinq.jpa.test.entities.Lineorder;
+import org.jinq.jpa.test.entities.PhoneNumber;
+import org.jinq.jpa.transform.MetamodelUtil;
+import org.jinq.jpa.transform.MetamodelUtilFromMetamodel;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Creates an in-memory Derby database holding the entities that are used 
+ * for testing Jinq for JPA so that the benchmarks have something to query.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase
+{
+   static final String[] COUNTRIES = {"Switzerland", "USA", "UK", "Canada"};
+   
+   @Param({"1000"})
+   public int numCustomers;
+   
+   public EntityManagerFactory entityManagerFactory;
+   public JinqJPAStreamProvider streams;
+   public EntityManager em;
+   
+   /**
+    * Metamodel used by the benchmarks that call the query generation code 
+    * directly instead of going through JinqJPAStreamProvider
+    */
+   public MetamodelUtil metamodel;
+   
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      entityManagerFactory = Persistence.createEntityManagerFactory("JPATest");
+      streams = new JinqJPAStreamProvider(entityManagerFactory);
+      streams.registerAssociationAttribute(Lineorder.class.getMethod("getItem"), "item", false);
+      streams.registerAssociationAttribute(Lineorder.class.getMethod("getSale"), "sale", false);
+      streams.registerAttributeConverterType(PhoneNumber.class);
+      
+      metamodel = new MetamodelUtilFromMetamodel(entityManagerFactory.getMetamodel());
+      metamodel.insertConvertedType(PhoneNumber.class.getName());
+
+      em = entityManagerFactory.createEntityManager();
+      em.getTransaction().begin();
+      for (int n = 0; n < numCustomers; n++)
+      {
+         Customer c = new Customer();
+         c.setName("Customer" + n);
+         c.setCountry(COUNTRIES[n % COUNTRIES.length]);
+         c.setDebt(n % 500);
+         c.setSalary(n % 1000);
+         c.setPhone(new PhoneNumber("1", "555", String.format("%07d", n)));
+         em.persist(c);
+      }
+      em.getTransaction().commit();
+      em.clear();
+   }
+   
+   @TearDown(Level.Trial)
+   public void tearDown()
+   {
+      em.close();
+      entityManagerFactory.close();
+      try {
+         DriverManager.getConnection("jdbc:derby:memory:demoDB;drop=true");
+      } catch (SQLException e) { }
+   }
+}
@@ -0,0 +1,21 @@
+package org.jinq.benchmarks;
+
+import org.jinq.jpa.test.entities.Customer;
+import org.jinq.orm.stream.JinqStream;
+
+/**
+ * Lambdas that are shared by the different benchmarks. 
+ */
+final class BenchmarkLambdas
+{
+   private BenchmarkLambdas() {}
+   
+   static JinqStream.Where<Customer, Exception> debtAbove(int debt)
+   {
+      return c -> c.getDebt() > debt;
+   }
+   
+   static final JinqStream.Select<Customer, String> selectName = c -> c.getName();
+   
+   static final JinqStream.CollectComparable<Customer, String> sortByName = c -> c.getName();
+}
@@ -0,0 +1,170 @@
+package org.jinq.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import org.jinq.jooq.querygen.RowReader;
+import org.jinq.jooq.querygen.TableRowReader;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.impl.TableImpl;
+import org.jooq.impl.TableRecordImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the reader that Jinq for jOOQ uses for converting the rows of a
+ * query result into table records with a reader that creates the records
+ * reflectively and looks up the fields of the table for every row (which
+ * is how records used to be read). The rows are held in memory, so only
+ * the cost of reading them is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JooqRowReaderBenchmark
+{
+   public static class CustomerTable extends TableImpl<CustomerRecord>
+   {
+      private static final long serialVersionUID = 1L;
+
+      public static final CustomerTable CUSTOMERS = new CustomerTable();
+
+      public final TableField<CustomerRecord, Integer> CUSTOMERID = createField(DSL.name("CUSTOMERID"), SQLDataType.INTEGER.nullable(false), this, "");
+      public final TableField<CustomerRecord, String> NAME = createField(DSL.name("NAME"), SQLDataType.VARCHAR(50).nullable(false), this, "");
+      public final TableField<CustomerRecord, String> COUNTRY = createField(DSL.name("COUNTRY"), SQLDataType.VARCHAR(50), this, "");
+      public final TableField<CustomerRecord, Integer> DEBT = createField(DSL.name("DEBT"), SQLDataType.INTEGER, this, "");
+      public final TableField<CustomerRecord, Integer> SALARY = createField(DSL.name("SALARY"), SQLDataType.INTEGER, this, "");
+
+      public CustomerTable()
+      {
+         super(DSL.name("CUSTOMERS"));
+      }
+
+      @Override
+      public Class<CustomerRecord> getRecordType()
+      {
+         return CustomerRecord.class;
+      }
+   }
+
+   public static class CustomerRecord extends TableRecordImpl<CustomerRecord>
+   {
+      private static final long serialVersionUID = 1L;
+
+      public CustomerRecord()
+      {
+         super(CustomerTable.CUSTOMERS);
+      }
+   }
+
+   /**
+    * Reads table records by creating them reflectively and looking up
+    * the fields of the table for every row.
+    */
+   static class ReflectiveTableRowReader<T extends Record> implements RowReader<T>
+   {
+      private final Constructor<? extends T> constructor;
+      private final Table<T> table;
+
+      ReflectiveTableRowReader(Table<T> table) throws NoSuchMethodException
+      {
+         this.table = table;
+         constructor = table.getRecordType().getDeclaredConstructor();
+      }
+
+      @Override
+      public T readResult(Record record)
+      {
+         return readResult(record, 0);
+      }
+
+      @Override
+      public T readResult(Record record, int offset)
+      {
+         T toReturn;
+         try {
+            toReturn = constructor.newInstance();
+         } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot construct class " + table.getRecordType().getName());
+         }
+         Field<?>[] fields = table.fields();
+         for (int idx = 0; idx < fields.length; idx++)
+            copyValueIntoRecord(toReturn, record, fields[idx], offset + idx);
+         return toReturn;
+      }
+
+      private <K> void copyValueIntoRecord(T outputRecord, Record inputRecord, Field<K> field, int idx)
+      {
+         outputRecord.set(field, inputRecord.get(idx, field.getConverter()));
+      }
+
+      @Override
+      public int getNumColumns()
+      {
+         return table.fields().length;
+      }
+   }
+
+   @Param({"1000000"})
+   public int numRows;
+
+   Record[] rows;
+
+   @Setup(Level.Trial)
+   public void createRows()
+   {
+      DSLContext dsl = DSL.using(SQLDialect.DEFAULT);
+      CustomerTable table = CustomerTable.CUSTOMERS;
+      rows = new Record[numRows];
+      for (int n = 0; n < numRows; n++)
+      {
+         Record row = dsl.newRecord(table.fields());
+         row.set(table.CUSTOMERID, n);
+         row.set(table.NAME, "Customer " + n);
+         row.set(table.COUNTRY, n % 2 == 0 ? "Canada" : "UK");
+         row.set(table.DEBT, n % 1000);
+         row.set(table.SALARY, n % 5000);
+         rows[n] = row;
+      }
+   }
+
+   private long readRows(RowReader<CustomerRecord> reader)
+   {
+      long total = 0;
+      for (Record row: rows)
+         total += reader.readResult(row).get(CustomerTable.CUSTOMERS.DEBT);
+      return total;
+   }
+
+   @Benchmark
+   public long readWithTableRowReader()
+   {
+      return readRows(new TableRowReader<>(CustomerTable.CUSTOMERS));
+   }
+
+   @Benchmark
+   public long readReflectively() throws NoSuchMethodException
+   {
+      return readRows(new ReflectiveTableRowReader<>(CustomerTable.CUSTOMERS));
+   }
+}
@@ -0,0 +1,60 @@
+package org.jinq.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jinq.jpa.transform.LambdaAnalysis;
+import org.jinq.jpa.transform.LambdaInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to read the contents of a lambda and to 
+ * symbolically execute its code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LambdaAnalysisBenchmark
+{
+   Object whereLambda;
+   LambdaInfo whereLambdaInfo;
+   
+   @Setup
+   public void setUp()
+   {
+      whereLambda = BenchmarkLambdas.debtAbove(100);
+      whereLambdaInfo = LambdaInfo.analyze(whereLambda, 0, true);
+   }
+   
+   @Benchmark
+   public LambdaInfo extractLambda()
+   {
+      return LambdaInfo.analyze(whereLambda, 0, true);
+   }
+
+   @Benchmark
+   public LambdaAnalysis fullyAnalyzeLambda(BenchmarkDatabase db)
+   {
+      // Measure the analysis itself instead of a lookup in the cache
+      // of previous analyses
+      db.metamodel.getLambdaAnalysisCache().clear();
+      return LambdaAnalysis.fullyAnalyzeLambda(whereLambdaInfo, db.metamodel, null, true, true, true, true);
+   }
+
+   @Benchmark
+   public LambdaAnalysis fullyAnalyzeLambdaCached(BenchmarkDatabase db)
+   {
+      return LambdaAnalysis.fullyAnalyzeLambda(whereLambdaInfo, db.metamodel, null, true, true, true, true);
+   }
+}
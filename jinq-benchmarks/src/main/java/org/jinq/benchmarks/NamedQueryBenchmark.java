@@ -0,0 +1,77 @@
+package org.jinq.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.Query;
+
+import org.jinq.jpa.test.entities.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of having the JPA provider create a query from JPQL
+ * each time with creating the query from a named query that was
+ * registered once, both directly and through the "useNamedQueries" hint.
+ * The JPA provider used is whichever one the JPATest persistence unit
+ * is configured for (EclipseLink by default).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NamedQueryBenchmark
+{
+   static final String JPQL = "SELECT A.name FROM Customer A WHERE A.debt > :param0 ORDER BY A.name ASC";
+   static final String QUERY_NAME = "NamedQueryBenchmark.customerNames";
+
+   @Setup(Level.Trial)
+   public void registerNamedQuery(BenchmarkDatabase db)
+   {
+      db.entityManagerFactory.addNamedQuery(QUERY_NAME, db.em.createQuery(JPQL));
+   }
+
+   @Benchmark
+   public Query createQuery(BenchmarkDatabase db)
+   {
+      return db.em.createQuery(JPQL);
+   }
+
+   @Benchmark
+   public Query createNamedQuery(BenchmarkDatabase db)
+   {
+      return db.em.createNamedQuery(QUERY_NAME);
+   }
+
+   @Benchmark
+   public List<String> executeQuery(BenchmarkDatabase db)
+   {
+      return db.streams.streamAll(db.em, Customer.class)
+            .where(BenchmarkLambdas.debtAbove(400))
+            .sortedBy(BenchmarkLambdas.sortByName)
+            .select(BenchmarkLambdas.selectName)
+            .toList();
+   }
+
+   @Benchmark
+   public List<String> executeNamedQuery(BenchmarkDatabase db)
+   {
+      return db.streams.streamAll(db.em, Customer.class)
+            .setHint("useNamedQueries", true)
+            .where(BenchmarkLambdas.debtAbove(400))
+            .sortedBy(BenchmarkLambdas.sortByName)
+            .select(BenchmarkLambdas.selectName)
+            .toList();
+   }
+}
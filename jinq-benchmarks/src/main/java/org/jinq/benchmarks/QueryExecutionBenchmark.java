@@ -0,0 +1,59 @@
+package org.jinq.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jinq.jpa.JPAJinqStream;
+import org.jinq.jpa.test.entities.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures queries made through JinqJPAStreamProvider. Since the same 
+ * lambdas are used each time, the queries are found in the query cache, 
+ * so this measures the cost of finding a query in the cache plus the cost 
+ * of running the query against the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryExecutionBenchmark
+{
+   private static JPAJinqStream<String> customerNames(BenchmarkDatabase db)
+   {
+      return db.streams.streamAll(db.em, Customer.class)
+            .where(BenchmarkLambdas.debtAbove(100))
+            .sortedBy(BenchmarkLambdas.sortByName)
+            .select(BenchmarkLambdas.selectName);
+   }
+
+   @Benchmark
+   public JPAJinqStream<String> composeCachedQuery(BenchmarkDatabase db)
+   {
+      return customerNames(db);
+   }
+
+   @Benchmark
+   public List<String> executeQuery(BenchmarkDatabase db)
+   {
+      return customerNames(db).toList();
+   }
+
+   @Benchmark
+   public List<Customer> executeEntityQuery(BenchmarkDatabase db)
+   {
+      List<Customer> customers = db.streams.streamAll(db.em, Customer.class)
+            .where(BenchmarkLambdas.debtAbove(400))
+            .toList();
+      // Don't let entities pile up in the persistence context
+      db.em.clear();
+      return customers;
+   }
+}
@@ -0,0 +1,117 @@
+package org.jinq.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jinq.jpa.jpqlquery.JPQLQuery;
+import org.jinq.jpa.jpqlquery.SelectFromWhere;
+import org.jinq.jpa.test.entities.Customer;
+import org.jinq.jpa.transform.CountTransform;
+import org.jinq.jpa.transform.DistinctTransform;
+import org.jinq.jpa.transform.JPQLQueryTransformConfiguration;
+import org.jinq.jpa.transform.JPQLQueryTransformConfigurationFactory;
+import org.jinq.jpa.transform.LambdaAnalysis;
+import org.jinq.jpa.transform.LambdaInfo;
+import org.jinq.jpa.transform.LimitSkipTransform;
+import org.jinq.jpa.transform.QueryTransformException;
+import org.jinq.jpa.transform.SelectTransform;
+import org.jinq.jpa.transform.SortingTransform;
+import org.jinq.jpa.transform.WhereTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to apply each type of transform to a query 
+ * once the lambdas have already been analyzed, and how long it takes to 
+ * generate the JPQL for the resulting query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark
+{
+   JPQLQueryTransformConfiguration config;
+   JPQLQuery<Customer> allCustomers;
+   JPQLQuery<Customer> filteredCustomers;
+   SelectFromWhere<Customer> sortedCustomers;
+   LambdaAnalysis whereAnalysis;
+   LambdaAnalysis selectAnalysis;
+   LambdaAnalysis sortAnalysis;
+
+   @Setup
+   public void setUp(BenchmarkDatabase db) throws QueryTransformException
+   {
+      config = new JPQLQueryTransformConfigurationFactory().createConfig();
+      config.metamodel = db.metamodel;
+      config.isObjectEqualsSafe = true;
+      config.isAllEqualsSafe = true;
+      config.isCollectionContainsSafe = true;
+      allCustomers = JPQLQuery.findAllEntities(db.metamodel.entityNameFromClass(Customer.class));
+      whereAnalysis = analyze(db, BenchmarkLambdas.debtAbove(100), 0);
+      selectAnalysis = analyze(db, BenchmarkLambdas.selectName, 0);
+      sortAnalysis = analyze(db, BenchmarkLambdas.sortByName, 1);
+      
+      filteredCustomers = new WhereTransform(config, false).apply(allCustomers, whereAnalysis, null); 
+      sortedCustomers = (SelectFromWhere<Customer>)new SortingTransform(config, true).<Customer, Customer>apply(filteredCustomers, sortAnalysis, null);
+   }
+   
+   private static LambdaAnalysis analyze(BenchmarkDatabase db, Object lambda, int lambdaIndex)
+   {
+      return LambdaInfo.analyze(lambda, lambdaIndex, true)
+            .fullyAnalyze(db.metamodel, null, true, true, true, true);
+   }
+   
+   @Benchmark
+   public JPQLQuery<?> where() throws QueryTransformException
+   {
+      return new WhereTransform(config, false).apply(allCustomers, whereAnalysis, null);
+   }
+
+   @Benchmark
+   public JPQLQuery<?> select() throws QueryTransformException
+   {
+      return new SelectTransform(config, false).apply(allCustomers, selectAnalysis, null);
+   }
+
+   @Benchmark
+   public JPQLQuery<?> sortedBy() throws QueryTransformException
+   {
+      return new SortingTransform(config, true).apply(allCustomers, sortAnalysis, null);
+   }
+
+   @Benchmark
+   public JPQLQuery<?> limit() throws QueryTransformException
+   {
+      return new LimitSkipTransform(config, true, 0).apply(sortedCustomers, null);
+   }
+
+   @Benchmark
+   public JPQLQuery<?> distinct() throws QueryTransformException
+   {
+      return new DistinctTransform(config).apply(allCustomers, null);
+   }
+
+   @Benchmark
+   public JPQLQuery<?> count() throws QueryTransformException
+   {
+      return new CountTransform(config).apply(filteredCustomers, null);
+   }
+
+   @Benchmark
+   public String generateQueryString()
+   {
+      // Queries remember their generated JPQL, so a fresh copy is needed
+      // each time
+      return sortedCustomers.shallowCopy().getQueryString();
+   }
+}
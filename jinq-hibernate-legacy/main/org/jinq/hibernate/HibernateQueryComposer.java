@@ -2,6 +2,7 @@ package org.jinq.hibernate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -13,8 +14,13 @@ import java.util.function.Consumer;
 
 
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.dialect.pagination.LimitHandler;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.jinq.jpa.JPAJinqStream;
+import org.jinq.jpa.JPAQueryMetrics;
 import org.jinq.jpa.jpqlquery.GeneratedQueryParameter;
 import org.jinq.jpa.jpqlquery.JPQLQuery;
 import org.jinq.jpa.jpqlquery.RowReader;
@@ -22,6 +28,7 @@ import org.jinq.jpa.jpqlquery.SelectFromWhere;
 import org.jinq.jpa.transform.AggregateTransform;
 import org.jinq.jpa.transform.CountTransform;
 import org.jinq.jpa.transform.CrossJoinTransform;
+import org.jinq.jpa.transform.DeleteTransform;
 import org.jinq.jpa.transform.DistinctTransform;
 import org.jinq.jpa.transform.GroupingTransform;
 import org.jinq.jpa.transform.JPAQueryComposerCache;
@@ -45,6 +52,7 @@ import org.jinq.jpa.transform.QueryTransformException;
 import org.jinq.jpa.transform.SelectTransform;
 import org.jinq.jpa.transform.SetOperationEmulationTransform;
 import org.jinq.jpa.transform.SortingTransform;
+import org.jinq.jpa.transform.UpdateTransform;
 import org.jinq.jpa.transform.WhereTransform;
 import org.jinq.orm.internal.QueryComposer;
 import org.jinq.orm.stream.JinqStream.AggregateGroup;
@@ -82,10 +90,18 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
     * than query generation.
     */
    List<LambdaInfo> lambdas = new ArrayList<>();
+   
+   /**
+    * Holds the values passed to limit() and skip() when creating this query. 
+    * Like query parameters, they are kept out of the generated query so that 
+    * queries that only differ in these values can share the same cached query.
+    */
+   List<Long> limitSkipValues = new ArrayList<>();
 
    private HibernateQueryComposer(HibernateQueryComposer<?> base, JPQLQuery<T> query, List<LambdaInfo> chainedLambdas, LambdaInfo...additionalLambdas)
    {
       this(base.metamodel, base.cachedQueries, base.lambdaAnalyzer, base.jpqlQueryTransformConfigurationFactory, base.em, base.hints, query, chainedLambdas, additionalLambdas);
+      limitSkipValues.addAll(base.limitSkipValues);
    }
 
    private HibernateQueryComposer(MetamodelUtil metamodel, JPAQueryComposerCache cachedQueries, LambdaAnalysisFactory lambdaAnalyzer, JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory, Session em, JinqJPAHints hints, JPQLQuery<T> query, List<LambdaInfo> chainedLambdas, LambdaInfo...additionalLambdas)
@@ -115,14 +131,88 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
 
    private void translationFail()
    {
-      if (hints.dieOnError) throw new IllegalArgumentException("Could not translate code to a query"); 
+      translationFail(null);
    }
    
    private void translationFail(Throwable e)
    {
+      if (hints.queryMetrics != null) hints.queryMetrics.recordTranslationFailure(e);
       if (hints.dieOnError) throw new IllegalArgumentException("Could not translate code to a query", e); 
    }
    
+   private long startTiming()
+   {
+      return hints.queryMetrics != null ? System.nanoTime() : 0;
+   }
+   
+   private void recordTiming(JPAQueryMetrics.Stage stage, long startTime)
+   {
+      if (hints.queryMetrics != null) 
+         hints.queryMetrics.recordTiming(stage, System.nanoTime() - startTime);
+   }
+   
+   private void recordCacheLookup(Optional<JPQLQuery<?>> cachedQuery)
+   {
+      if (hints.useCaching && hints.queryMetrics != null)
+         hints.queryMetrics.recordCacheLookup(cachedQuery != null);
+   }
+   
+   private LambdaInfo extractLambda(Object lambda, int lambdaIndex)
+   {
+      long startTime = startTiming();
+      LambdaInfo lambdaInfo = lambdaAnalyzer.extractSurfaceInfo(lambda, lambdaIndex, hints.dieOnError);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_EXTRACTION, startTime);
+      return lambdaInfo;
+   }
+   
+   private LambdaAnalysis analyzeLambda(LambdaInfo lambdaInfo)
+   {
+      long startTime = startTiming();
+      LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_ANALYSIS, startTime);
+      return lambdaAnalysis;
+   }
+   
+   private LambdaAnalysis partiallyAnalyzeLambda(LambdaInfo lambdaInfo)
+   {
+      long startTime = startTiming();
+      LambdaAnalysis lambdaAnalysis = lambdaInfo.partiallyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_ANALYSIS, startTime);
+      return lambdaAnalysis;
+   }
+   
+   private String generateQueryString(JPQLQuery<?> query)
+   {
+      long startTime = startTiming();
+      String queryString = query.getQueryString();
+      recordTiming(JPAQueryMetrics.Stage.QUERY_GENERATION, startTime);
+      return queryString;
+   }
+   
+   private Query createQuery(String queryString)
+   {
+      long startTime = startTiming();
+      Query q = em.createQuery(queryString);
+      recordTiming(JPAQueryMetrics.Stage.CREATE_QUERY, startTime);
+      return q;
+   }
+   
+   private List<Object> fetchPage(Query q)
+   {
+      long startTime = startTiming();
+      List<Object> results = q.list();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return results;
+   }
+   
+   private T readResult(RowReader<T> reader, Object result)
+   {
+      long startTime = startTiming();
+      T value = reader.readResult(result);
+      recordTiming(JPAQueryMetrics.Stage.ROW_DECODING, startTime);
+      return value;
+   }
+   
    private void fillQueryParameters(Query q, List<GeneratedQueryParameter> parameters)
    {
       for (GeneratedQueryParameter param: parameters)
@@ -160,22 +250,49 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
    
    public T executeAndGetSingleResult()
    {
-      final String queryString = query.getQueryString();
-      final Query q = em.createQuery(queryString);
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
       fillQueryParameters(q, query.getQueryParameters());
       final RowReader<T> reader = query.getRowReader();
       logQuery(queryString, q);
       if (hints.jakartaPersistenceFetchgraph != null)
          q.setHint("jakarta.persistence.fetchgraph", hints.jakartaPersistenceFetchgraph);
-      return reader.readResult(q.uniqueResult());
+      long startTime = startTiming();
+      Object result = q.uniqueResult();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return readResult(reader, result);
+   }
+   
+   /**
+    * Runs a bulk UPDATE or DELETE statement.
+    * @return the number of entities changed
+    */
+   private long executeUpdate()
+   {
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
+      fillQueryParameters(q, query.getQueryParameters());
+      logQuery(queryString, q);
+      long startTime = startTiming();
+      long count = q.executeUpdate();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return count;
+   }
+   
+   @Override
+   public boolean isParallelResults()
+   {
+      // The results are still read from the database in a single thread 
+      // at a time, but the results can be processed in parallel
+      return hints.parallelResults;
    }
    
    @Override
    public Iterator<T> executeAndReturnResultIterator(
          Consumer<Throwable> exceptionReporter)
    {
-      final String queryString = query.getQueryString();
-      final Query q = em.createQuery(queryString);
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
       fillQueryParameters(q, query.getQueryParameters());
       final RowReader<T> reader = query.getRowReader();
       long skip = 0;
@@ -184,14 +301,19 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       {
          SelectFromWhere<?> sfw = (SelectFromWhere<?>)query;
          if (sfw.limit >= 0)
-            limit = sfw.limit;
+            limit = sfw.getLimitAmount(limitSkipValues);
          if (sfw.skip >= 0)
-            skip = sfw.skip;
+            skip = sfw.getSkipAmount(limitSkipValues);
       }
+      // Some JPA providers treat a maximum of 0 results as having no maximum
+      if (limit == 0)
+         return Collections.emptyIterator();
       final long initialOffset = skip;
       final long maxTotalResults = limit;
       if (hints.jakartaPersistenceFetchgraph != null)
          q.setHint("jakarta.persistence.fetchgraph", hints.jakartaPersistenceFetchgraph);
+      if (hints.scrollResults)
+         return scrollResults(queryString, q, reader, initialOffset, maxTotalResults);
       
       // To handle the streaming of giant result sets, we will break
       // them down into pages. Technically, this is not really correct
@@ -218,7 +340,7 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                if (hints.automaticResultsPagingSize > 0)
                {
                   logQuery(queryString, q);
-                  List<Object> results = q.list();
+                  List<Object> results = fetchPage(q);
                   if (results.size() > hints.automaticResultsPagingSize)
                   {
                      hasNextPage = true;
@@ -231,13 +353,13 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                else
                {
                   logQuery(queryString, q);
-                  List<Object> results = q.list();
+                  List<Object> results = fetchPage(q);
                   resultIterator = results.iterator();
                }
             }
             if (resultIterator.hasNext())
             {
-               nextElement(reader.readResult(resultIterator.next()));
+               nextElement(readResult(reader, resultIterator.next()));
             }
             else 
             {
@@ -256,20 +378,132 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       };
    }
 
+   /**
+    * Reads the results of a query through a single forward-only database
+    * cursor instead of running the query again for each page of results.
+    * The "automaticPageSize" hint is used as the JDBC fetch size, so only
+    * that many rows are transferred from the database at a time. The cursor
+    * is closed once all the results have been read or the stream is closed.
+    * 
+    * Skipped rows are left out by the query itself when the dialect can 
+    * put an offset in the SQL. Other dialects emulate the first result of 
+    * a query by positioning the cursor, which is not allowed for 
+    * forward-only cursors, so the skipped rows are instead skipped by 
+    * moving forward over them with the cursor.
+    */
+   private Iterator<T> scrollResults(String queryString, Query q, RowReader<T> reader, long skip, long limit)
+   {
+      long clientSkip = skip;
+      long maxRows = Long.MAX_VALUE;
+      if (skip > 0 && skip < Integer.MAX_VALUE && supportsOffsetInQuery())
+      {
+         clientSkip = 0;
+         q.setFirstResult((int)skip);
+         // Hibernate only puts the offset in the SQL if there is also a 
+         // maximum number of rows, and some dialects add the offset to the
+         // maximum, so the sum must fit in an int
+         maxRows = Math.min(limit, Integer.MAX_VALUE - skip);
+         q.setMaxResults((int)maxRows);
+      }
+      else if (limit != Long.MAX_VALUE)
+      {
+         // The iterator stops after reading the limit, so the maximum 
+         // number of rows only needs to be exact when it fits in an int
+         maxRows = limit > Integer.MAX_VALUE - skip ? Integer.MAX_VALUE : skip + limit;
+         q.setMaxResults((int)maxRows);
+      }
+      // JDBC drivers may reject fetch sizes larger than the maximum number 
+      // of rows
+      if (hints.automaticResultsPagingSize > 0)
+         q.setFetchSize((int)Math.min(hints.automaticResultsPagingSize, maxRows));
+      logQuery(queryString, q);
+      long startTime = startTiming();
+      ScrollableResults scroll = q.scroll(ScrollMode.FORWARD_ONLY);
+      try {
+         for (long n = 0; n < clientSkip; n++)
+         {
+            if (!scroll.next()) break;
+         }
+      }
+      catch (RuntimeException e)
+      {
+         scroll.close();
+         throw e;
+      }
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return new ScrollingResultIterator(scroll, reader, limit);
+   }
+
+   /**
+    * @return true if the dialect of the session can skip rows using an 
+    *    offset in the SQL of the query
+    */
+   private boolean supportsOffsetInQuery()
+   {
+      if (!(em.getSessionFactory() instanceof SessionFactoryImplementor))
+         return false;
+      LimitHandler limitHandler = ((SessionFactoryImplementor)em.getSessionFactory())
+            .getJdbcServices().getDialect().getLimitHandler();
+      return limitHandler.supportsLimit() && limitHandler.supportsLimitOffset();
+   }
+
+   private class ScrollingResultIterator extends NextOnlyIterator<T> implements AutoCloseable
+   {
+      final ScrollableResults scroll;
+      final RowReader<T> reader;
+      long remaining;
+      boolean isClosed = false;
+      
+      ScrollingResultIterator(ScrollableResults scroll, RowReader<T> reader, long limit)
+      {
+         this.scroll = scroll;
+         this.reader = reader;
+         this.remaining = limit;
+      }
+      
+      @Override protected void generateNext()
+      {
+         if (!isClosed && remaining > 0 && scroll.next())
+         {
+            remaining--;
+            // Each row is returned as an array, but list() returns queries 
+            // with a single column as the value of that column
+            Object[] row = scroll.get();
+            nextElement(readResult(reader, row.length == 1 ? row[0] : row));
+         }
+         else
+         {
+            close();
+            noMoreElements();
+         }
+      }
+      
+      @Override public void close()
+      {
+         if (isClosed) return;
+         isClosed = true;
+         scroll.close();
+      }
+   }
+
    private <U> HibernateQueryComposer<U> applyTransformWithLambda(JPQLNoLambdaQueryTransform transform)
    {
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), null) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
+            long startTime = startTiming();
             newQuery = transform.apply(query, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -279,29 +513,44 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), null, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new HibernateQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas);
    }
    
    public <U> HibernateQueryComposer<U> applyTransformWithLambda(JPQLOneLambdaQueryTransform transform, Object lambda)
    {
-      LambdaInfo lambdaInfo = lambdaAnalyzer.extractSurfaceInfo(lambda, lambdas.size(), hints.dieOnError);
-      if (lambdaInfo == null) { translationFail(); return null; }
+      return applyTransformWithLambda(transform, lambda, false);
+   }
+   
+   /**
+    * @param isPartial whether the lambda should only be partially analyzed
+    *    so that the parts of it that can be translated can be put into 
+    *    the query. Failures aren't reported then because the lambda has
+    *    already failed to be fully translated. 
+    */
+   private <U> HibernateQueryComposer<U> applyTransformWithLambda(JPQLOneLambdaQueryTransform transform, Object lambda, boolean isPartial)
+   {
+      LambdaInfo lambdaInfo = extractLambda(lambda, lambdas.size());
+      if (lambdaInfo == null) { if (!isPartial) translationFail(); return null; }
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo.getLambdaSourceString()}) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
-            LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
-            if (lambdaAnalysis == null) { translationFail(); return null; }
+            LambdaAnalysis lambdaAnalysis = isPartial ? partiallyAnalyzeLambda(lambdaInfo) : analyzeLambda(lambdaInfo);
+            if (lambdaAnalysis == null) { if (!isPartial) translationFail(); return null; }
             getConfig().checkLambdaSideEffects(lambdaAnalysis);
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalysis, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -311,34 +560,38 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo.getLambdaSourceString()}, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { if (!isPartial) translationFail(failure); return null; }
       return new HibernateQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfo);
    }
 
    public <U> HibernateQueryComposer<U> applyTransformWithTwoLambdas(OuterJoinOnTransform transform, Object lambda1, Object lambda2)
    {
-      LambdaInfo lambdaInfo1 = lambdaAnalyzer.extractSurfaceInfo(lambda1, lambdas.size(), hints.dieOnError);
+      LambdaInfo lambdaInfo1 = extractLambda(lambda1, lambdas.size());
       if (lambdaInfo1 == null) { translationFail(); return null; }
-      LambdaInfo lambdaInfo2 = lambdaAnalyzer.extractSurfaceInfo(lambda2, lambdas.size() + 1, hints.dieOnError);
+      LambdaInfo lambdaInfo2 = extractLambda(lambda2, lambdas.size() + 1);
       if (lambdaInfo2 == null) { translationFail(); return null; }
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo1.getLambdaSourceString(), lambdaInfo2.getLambdaSourceString()}) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
-            LambdaAnalysis lambdaAnalysis1 = lambdaInfo1.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+            LambdaAnalysis lambdaAnalysis1 = analyzeLambda(lambdaInfo1);
             if (lambdaAnalysis1 == null) { translationFail(); return null; }
-            LambdaAnalysis lambdaAnalysis2 = lambdaInfo2.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+            LambdaAnalysis lambdaAnalysis2 = analyzeLambda(lambdaInfo2);
             if (lambdaAnalysis2 == null) { translationFail(); return null; }
             getConfig().checkLambdaSideEffects(lambdaAnalysis1);
             getConfig().checkLambdaSideEffects(lambdaAnalysis2);
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalysis1, lambdaAnalysis2, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -348,7 +601,7 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo1.getLambdaSourceString(), lambdaInfo2.getLambdaSourceString()}, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new HibernateQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfo1, lambdaInfo2);
    }
 
@@ -358,13 +611,15 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       String [] lambdaSources = new String[lambdaInfos.length]; 
       for (int n = 0; n < groupingLambdas.length; n++)
       {
-         lambdaInfos[n] = lambdaAnalyzer.extractSurfaceInfo(groupingLambdas[n], lambdas.size() + n, hints.dieOnError);
+         lambdaInfos[n] = extractLambda(groupingLambdas[n], lambdas.size() + n);
          if (lambdaInfos[n] == null) { translationFail(); return null; }
          lambdaSources[n] = lambdaInfos[n].getLambdaSourceString();
       }
       
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ? 
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), lambdaSources) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
@@ -373,15 +628,17 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
             LambdaAnalysis[] lambdaAnalyses = new LambdaAnalysis[lambdaInfos.length];
             for (int n = 0; n < lambdaInfos.length; n++)
             {
-               lambdaAnalyses[n] = lambdaInfos[n].fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+               lambdaAnalyses[n] = analyzeLambda(lambdaInfos[n]);
                if (lambdaAnalyses[n] == null) { translationFail(); return null; }
                getConfig().checkLambdaSideEffects(lambdaAnalyses[n]);
             }
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalyses, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -391,7 +648,7 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), lambdaSources, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new HibernateQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfos);
    }
 
@@ -414,16 +671,20 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       JPQLQuery<?> otherQuery = otherComposer.query;
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, otherQuery, transform.getTransformationTypeCachingTag(), null) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<V> newQuery = null;
          try {
+            long startTime = startTiming();
             newQuery = transform.apply(query, otherQuery, lambdas.size());
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -433,7 +694,7 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
                cachedQueries.cacheQuery(query, otherQuery, transform.getTransformationTypeCachingTag(), null, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new HibernateQueryComposer<V>(this, (JPQLQuery<V>)cachedQuery.get(), lambdas, otherComposer.lambdas.toArray(new LambdaInfo[0]));
    }
 
@@ -469,6 +730,20 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       return applyTransformWithLambda(new WhereTransform(getConfig(), true), test);
    }
 
+   @Override
+   public <E extends Exception> HibernateQueryComposer<T> wherePartially(Object testLambda)
+   {
+      if (!hints.partialWhere) return null;
+      return applyTransformWithLambda(new WhereTransform(getConfig(), false, true), testLambda, true);
+   }
+   
+   @Override
+   public <E extends Exception> HibernateQueryComposer<T> whereWithSourcePartially(Object test)
+   {
+      if (!hints.partialWhere) return null;
+      return applyTransformWithLambda(new WhereTransform(getConfig(), true, true), test, true);
+   }
+
    @Override
    public <V extends Comparable<V>> HibernateQueryComposer<T> sortedBy(
          Object sorter, boolean isAscending)
@@ -479,13 +754,19 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
    @Override
    public HibernateQueryComposer<T> limit(long n)
    {
-      return applyTransformWithLambda(new LimitSkipTransform(getConfig(), true, n));
+      HibernateQueryComposer<T> composer = applyTransformWithLambda(new LimitSkipTransform(getConfig(), true, limitSkipValues.size()));
+      if (composer != null)
+         composer.limitSkipValues.add(n);
+      return composer;
    }
 
    @Override
    public HibernateQueryComposer<T> skip(long n)
    {
-      return applyTransformWithLambda(new LimitSkipTransform(getConfig(), false, n));
+      HibernateQueryComposer<T> composer = applyTransformWithLambda(new LimitSkipTransform(getConfig(), false, limitSkipValues.size()));
+      if (composer != null)
+         composer.limitSkipValues.add(n);
+      return composer;
    }
 
    @Override
@@ -610,6 +891,36 @@ class HibernateQueryComposer<T> implements QueryComposer<T>
       return applyTransformWithTwoQueryMerge(new SetOperationEmulationTransform(getConfig(), SetOperationEmulationTransform.SetOperationType.AND_NOT_EXCEPT), otherSet);
    }
 
+   /**
+    * Sets fields of the entities returned by the query using a single 
+    * bulk UPDATE statement.
+    * @param fieldValueLambdas pairs of lambdas. The first lambda of each
+    *    pair reads the field to be set, and the second gives its new value.
+    * @return the number of entities updated or null if the update 
+    *    could not be translated into a query
+    */
+   public Long updateAll(Object[] fieldValueLambdas)
+   {
+      HibernateQueryComposer<T> result = applyTransformWithLambdas(new UpdateTransform(getConfig()), fieldValueLambdas);
+      if (result != null)
+         return result.executeUpdate();
+      return null;
+   }
+
+   /**
+    * Deletes the entities returned by the query using a single bulk 
+    * DELETE statement.
+    * @return the number of entities deleted or null if the delete 
+    *    could not be translated into a query
+    */
+   public Long deleteAll()
+   {
+      HibernateQueryComposer<T> result = applyTransformWithLambda(new DeleteTransform(getConfig()));
+      if (result != null)
+         return result.executeUpdate();
+      return null;
+   }
+
    @Override
    public Long count()
    {
@@ -1,10 +1,17 @@
 package org.jinq.hibernate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Enumeration;
 import java.util.Optional;
 
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Metamodel;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
@@ -13,7 +20,9 @@ import org.jinq.jpa.JPAJinqStream;
 import org.jinq.jpa.jpqlquery.JPQLQuery;
 import org.jinq.jpa.transform.JPAQueryComposerCache;
 import org.jinq.jpa.transform.JPQLQueryTransformConfigurationFactory;
+import org.jinq.jpa.transform.LambdaAnalysis;
 import org.jinq.jpa.transform.LambdaAnalysisFactory;
+import org.jinq.jpa.transform.LambdaIndex;
 import org.jinq.jpa.transform.MetamodelUtil;
 import org.jinq.jpa.transform.MetamodelUtilAttribute;
 import org.jinq.jpa.transform.MetamodelUtilFromMetamodel;
@@ -29,6 +38,7 @@ import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
 public class JinqHibernateStreamProvider
 {
    MetamodelUtil metamodel;
+   Metamodel entityMetamodel;
    JPAQueryComposerCache cachedQueries = new JPAQueryComposerCache();
    LambdaAnalysisFactory lambdaAnalyzer = new LambdaAnalysisFactory();
    JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory = new JPQLQueryTransformConfigurationFactory();
@@ -40,6 +50,7 @@ public class JinqHibernateStreamProvider
          this.metamodel = new MetamodelUtilFromMetamodel(((EntityManagerFactory)factory).getMetamodel(), true);
       else
          this.metamodel = new MetamodelUtilFromSessionFactory(factory);
+      this.entityMetamodel = factory.getMetamodel();
    }
 
 //   public JinqHibernateStreamProvider(Metamodel metamodel)
@@ -78,16 +89,102 @@ public class JinqHibernateStreamProvider
    }
 
    /**
-    * Sets a hint for how queries should be executed by Jinq
+    * Sets a hint for how queries should be executed by Jinq. The 
+    * "queryCacheSize" hint sets the maximum number of query transformations
+    * that are cached by this provider.
     * @param name 
     * @param val
     * @return true if the hint was valid
     */
    public boolean setHint(String name, Object val)
    {
+      if ("queryCacheSize".equals(name) && val instanceof Integer)
+      {
+         cachedQueries.setMaxEntries((Integer)val);
+         return true;
+      }
       return hints.setHint(name, val);
    }
    
+   /**
+    * Returns the cache of query transformations used by this provider. The
+    * cache can be inspected to find its hit, miss, and eviction counts when
+    * deciding on an appropriate cache size.
+    */
+   public JPAQueryComposerCache getQueryCache()
+   {
+      return cachedQueries;
+   }
+   
+   /**
+    * Analyzes the code of lambdas ahead of time so that the first queries
+    * using them do not have to wait for the analysis. Registering new entity 
+    * methods or types with the provider discards earlier analyses, so this
+    * should be called after the provider has been configured.
+    * @param lambdas descriptions of lambda methods in the format used by
+    *    the lambda index 
+    * @return the number of lambdas that could be analyzed
+    */
+   public int analyzeLambdas(Collection<String> lambdas)
+   {
+      int count = 0;
+      for (String lambda: lambdas)
+      {
+         if (LambdaAnalysis.preanalyzeLambda(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, lambda))
+            count++;
+      }
+      return count;
+   }
+   
+   /**
+    * Analyzes the lambdas listed in all the lambda indexes that can be
+    * found by a class loader. A lambda index can be generated during a 
+    * build by running org.jinq.jpa.transform.LambdaIndex on the directory
+    * of compiled classes.
+    * @see #analyzeLambdas(Collection)
+    * @param classLoader class loader used to find the lambda indexes
+    * @return the number of lambdas that could be analyzed
+    */
+   public int analyzeIndexedLambdas(ClassLoader classLoader) throws IOException
+   {
+      int count = 0;
+      Enumeration<URL> indexes = classLoader.getResources(LambdaIndex.INDEX_RESOURCE);
+      while (indexes.hasMoreElements())
+      {
+         try (InputStream in = indexes.nextElement().openStream())
+         {
+            count += analyzeLambdas(LambdaIndex.readIndex(in));
+         }
+      }
+      return count;
+   }
+   
+   /**
+    * Writes a snapshot of the queries cached by this provider to a stream,
+    * usually when the application shuts down. A provider in a later run 
+    * of the application can import the snapshot with importQueryCache() 
+    * so that the queries do not have to be translated again.
+    * @param out stream to write the snapshot to
+    * @return the number of cached queries written to the snapshot
+    */
+   public int exportQueryCache(OutputStream out) throws IOException
+   {
+      return cachedQueries.exportSnapshot(out, entityMetamodel, hints.lambdaClassLoader);
+   }
+   
+   /**
+    * Imports a snapshot written by exportQueryCache() into the query cache
+    * of this provider. Queries using lambdas whose code has changed since
+    * the snapshot was written are not imported. This should be called 
+    * after the provider has been configured but before any queries are run.
+    * @param in stream to read the snapshot from
+    * @return the number of cached queries imported
+    */
+   public int importQueryCache(InputStream in) throws IOException
+   {
+      return cachedQueries.importSnapshot(in, entityMetamodel, hints.lambdaClassLoader);
+   }
+   
    /**
     * The Hibernate metamodel seems to hold incorrect information about
     * composite keys or entities that use other entities as keys or something.
@@ -3,6 +3,7 @@ package org.jinq.hibernate;
 import jakarta.persistence.EntityGraph;
 
 import org.jinq.jpa.JPAQueryLogger;
+import org.jinq.jpa.JPAQueryMetrics;
 
 class JinqJPAHints
 {
@@ -10,9 +11,13 @@ class JinqJPAHints
    public JinqJPAHints(JinqJPAHints oldHints)
    {
       automaticResultsPagingSize = oldHints.automaticResultsPagingSize;
+      parallelResults = oldHints.parallelResults;
+      scrollResults = oldHints.scrollResults;
       queryLogger = oldHints.queryLogger;
+      queryMetrics = oldHints.queryMetrics;
       lambdaClassLoader = oldHints.lambdaClassLoader;
       dieOnError = oldHints.dieOnError;
+      partialWhere = oldHints.partialWhere;
       useCaching = oldHints.useCaching;
       isObjectEqualsSafe = oldHints.isObjectEqualsSafe;
       isAllEqualsSafe = oldHints.isAllEqualsSafe;
@@ -21,9 +26,13 @@ class JinqJPAHints
    }
    
    public int automaticResultsPagingSize = 10000;
+   public boolean parallelResults = false;
+   public boolean scrollResults = false;
    public JPAQueryLogger queryLogger = null;
+   public JPAQueryMetrics queryMetrics = null;
    public ClassLoader lambdaClassLoader = null;
    public boolean dieOnError = true;
+   public boolean partialWhere = true;
    public boolean useCaching = true;
    public boolean isObjectEqualsSafe = true;
    public boolean isAllEqualsSafe = true;
@@ -34,12 +43,20 @@ class JinqJPAHints
    {
       if ("automaticPageSize".equals(name) && val instanceof Integer)
          automaticResultsPagingSize = (int)val;
+      else if ("parallelResults".equals(name) && val instanceof Boolean)
+         parallelResults = (Boolean)val;
+      else if ("scrollResults".equals(name) && val instanceof Boolean)
+         scrollResults = (Boolean)val;
       else if ("queryLogger".equals(name) && val instanceof JPAQueryLogger)
          queryLogger = (JPAQueryLogger)val;
+      else if ("queryMetrics".equals(name) && val instanceof JPAQueryMetrics)
+         queryMetrics = (JPAQueryMetrics)val;
       else if ("lambdaClassLoader".equals(name) && val instanceof ClassLoader)
          lambdaClassLoader = (ClassLoader)val;
       else if ("exceptionOnTranslationFail".equals(name) && val instanceof Boolean)
          dieOnError = (Boolean)val;
+      else if ("partialWhere".equals(name) && val instanceof Boolean)
+         partialWhere = (Boolean)val;
       else if ("useCaching".equals(name) && val instanceof Boolean)
          useCaching = (Boolean)val;
       else if ("isObjectEqualsSafe".equals(name) && val instanceof Boolean)
@@ -1,5 +1,7 @@
 package org.jinq.hibernate;
 
+import java.util.Collection;
+
 import org.jinq.jpa.JPAJinqStream;
 import org.jinq.orm.internal.QueryComposer;
 import org.jinq.orm.stream.InQueryStreamSource;
@@ -105,6 +107,31 @@ class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<
       return new JPAJinqStreamWrapper<>(this).andNotExcept(otherSet);
    }
 
+   @Override
+   public <U> long updateAll(Select<T, U> field, Select<T, U> value)
+   {
+      Long count = jpaComposer.updateAll(new Object[] {field, value});
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).updateAll(field, value);
+   }
+
+   @Override
+   public <U, V> long updateAll(Select<T, U> field1, Select<T, U> value1,
+         Select<T, V> field2, Select<T, V> value2)
+   {
+      Long count = jpaComposer.updateAll(new Object[] {field1, value1, field2, value2});
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).updateAll(field1, value1, field2, value2);
+   }
+
+   @Override
+   public long deleteAll()
+   {
+      Long count = jpaComposer.deleteAll();
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).deleteAll();
+   }
+
    // Wrapped versions of old API
    
    @Override
@@ -204,6 +231,13 @@ class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<
    {
       return wrap(super.crossJoin(join));
    }
+
+   @Override
+   public <U, K> JPAJinqStream<Pair<T, U>> hashJoin(Collection<U> joined,
+         Select<T, K> leftKey, Select<U, K> rightKey)
+   {
+      return wrap(super.hashJoin(joined, leftKey, rightKey));
+   }
    
    @Override
    public <U, V> JPAJinqStream<Pair<U, V>> group(
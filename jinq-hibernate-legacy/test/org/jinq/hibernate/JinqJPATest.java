@@ -8,6 +8,7 @@ import static org.junit.Assert.fail;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -60,6 +61,54 @@ public class JinqJPATest extends JinqJPATestBase
       assertEquals("Eve", names.get(4));
    }
 
+   @Test
+   public void testScrollResults()
+   {
+      List<String> names = streams.streamAll(em, Customer.class)
+            .setHint("scrollResults", true)
+            .setHint("automaticPageSize", 2)
+            .sortedBy(c -> c.getName())
+            .select(c -> c.getName())
+            .toList();
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), names);
+      
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .setHint("scrollResults", true)
+            .sortedBy(c -> c.getName())
+            .skip(1)
+            .limit(2)
+            .toList();
+      assertEquals(2, customers.size());
+      assertEquals("Bob", customers.get(0).getName());
+      assertEquals("Carol", customers.get(1).getName());
+      
+      names = streams.streamAll(em, Customer.class)
+            .setHint("scrollResults", true)
+            .select(c -> c.getName())
+            .sortedBy(name -> name)
+            .skip(3)
+            .toList();
+      assertEquals(Arrays.asList("Dave", "Eve"), names);
+      
+      List<Pair<String, Integer>> debts = streams.streamAll(em, Customer.class)
+            .setHint("scrollResults", true)
+            .where(c -> c.getDebt() > 150)
+            .sortedBy(c -> c.getName())
+            .select(c -> new Pair<>(c.getName(), c.getDebt()))
+            .toList();
+      assertEquals(2, debts.size());
+      assertEquals(new Pair<>("Bob", 200), debts.get(0));
+      
+      // Only read part of the results before closing the stream
+      try (JinqStream<Customer> stream = streams.streamAll(em, Customer.class)
+            .setHint("scrollResults", true)
+            .setHint("automaticPageSize", 1)
+            .sortedBy(c -> c.getName()))
+      {
+         assertEquals("Alice", stream.findFirst().get().getName());
+      }
+   }
+
    @Test
    public void testEntityGraph()
    {
@@ -96,6 +145,78 @@ public class JinqJPATest extends JinqJPATestBase
       fail();
    }
    
+   private static boolean isShortName(String name)
+   {
+      return name.length() <= 3;
+   }
+   
+   @Test
+   public void testUpdateAll()
+   {
+      int extra = 10;
+      long updated = streams.streamAll(em, Customer.class)
+            .where(c -> c.getCountry().equals("Switzerland"))
+            .updateAll(c -> c.getDebt(), c -> c.getDebt() + extra);
+      assertEquals("UPDATE org.jinq.hibernate.test.entities.Customer A SET A.debt = A.debt + :param0 WHERE A.country = 'Switzerland'", query);
+      assertEquals(2, updated);
+      List<Integer> debts = streams.streamAll(em, Customer.class)
+            .where(c -> c.getCountry().equals("Switzerland"))
+            .select(c -> c.getDebt())
+            .sortedBy(debt -> debt)
+            .toList();
+      assertEquals(Arrays.asList(110, 210), debts);
+   }
+   
+   @Test
+   public void testUpdateAllTwoFields()
+   {
+      long updated = streams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Eve"))
+            .updateAll(c -> c.getDebt(), c -> 0, c -> c.getSalary(), c -> c.getSalary() * 2);
+      assertEquals("UPDATE org.jinq.hibernate.test.entities.Customer A SET A.debt = 0, A.salary = A.salary * 2 WHERE A.name = 'Eve'", query);
+      assertEquals(1, updated);
+      Pair<Integer, Integer> eve = streams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Eve"))
+            .select(c -> new Pair<>(c.getDebt(), c.getSalary()))
+            .getOnlyValue();
+      assertEquals(0, (int)eve.getOne());
+      assertEquals(60, (int)eve.getTwo());
+   }
+   
+   @Test
+   public void testDeleteAll()
+   {
+      long deleted = streams.streamAll(em, Lineorder.class)
+            .where(lo -> lo.getQuantity() >= 100)
+            .sortedBy(lo -> lo.getQuantity())
+            .deleteAll();
+      assertEquals("DELETE FROM org.jinq.hibernate.test.entities.Lineorder A WHERE A.quantity >= 100", query);
+      assertEquals(2, deleted);
+      assertEquals(0, streams.streamAll(em, Lineorder.class)
+            .where(lo -> lo.getQuantity() >= 100)
+            .count());
+   }
+   
+   @Test(expected=IllegalArgumentException.class)
+   public void testUpdateAllNotEntity()
+   {
+      streams.streamAll(em, Customer.class)
+            .select(c -> c.getName())
+            .updateAll(name -> name, name -> "Anonymous");
+   }
+   
+   @Test
+   public void testPartialWhere()
+   {
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .setHint("exceptionOnTranslationFail", false)
+            .where(c -> c.getDebt() >= 100 && isShortName(c.getName()))
+            .toList();
+      assertEquals("SELECT A FROM org.jinq.hibernate.test.entities.Customer A WHERE A.debt >= 100", query);
+      assertEquals(1, customers.size());
+      assertEquals("Bob", customers.get(0).getName());
+   }
+   
    @Test
    public void testJoinNMLink()
    {
@@ -405,9 +526,11 @@ public class JinqJPATest extends JinqJPATestBase
       assertFalse(french.isPresent());
    }
 
-   @Test(expected=IllegalArgumentException.class)
+   @Test
    public void testTooManyPaths()
    {
+      // There are too many paths to analyze separately, so paths are 
+      // merged where they come back together
       List<Customer> results = streams.streamAll(em, Customer.class)
             .where(c -> (c.getName().equals("Alice") && c.getSalary() == 5)
                   || (c.getName().equals("Bob") && c.getSalary() == 6)
@@ -418,6 +541,8 @@ public class JinqJPATest extends JinqJPATestBase
                   || (c.getName().equals("Bob") && c.getSalary() == 11)
                   || (c.getName().equals("Carol") && c.getSalary() == 12))
             .toList();
+      assertEquals("SELECT A FROM org.jinq.hibernate.test.entities.Customer A WHERE A.name = 'Alice' AND A.salary = 5 OR (A.name <> 'Alice' OR A.salary <> 5) AND A.name = 'Bob' AND A.salary = 6 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND A.name = 'Dave' AND A.salary = 7 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND A.name = 'Eve' AND A.salary = 8 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND A.name = 'Carol' AND A.salary = 9 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND A.name = 'Alice' AND A.salary = 10 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND (A.name <> 'Alice' OR A.salary <> 10) AND A.name = 'Bob' AND A.salary = 11 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND (A.name <> 'Alice' OR A.salary <> 10) AND (A.name <> 'Bob' OR A.salary <> 11) AND A.name = 'Carol' AND A.salary = 12", query);
+      assertEquals(0, results.size());
    }
    
    @Test
@@ -1,5 +1,10 @@
 package org.jinq.jooq;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.jinq.jooq.transform.JooqQueryCache;
 import org.jinq.jooq.transform.MetamodelUtil;
 import org.jooq.DSLContext;
 import org.jooq.Record;
@@ -8,13 +13,22 @@ import org.jooq.impl.TableImpl;
 
 public class JinqJooqContext
 {
+   /**
+    * Queries on the same schema share the same cache of analyzed lambdas 
+    * and translated queries, even if they are run using different contexts.
+    */
+   private static final Map<Schema, JooqQueryCache> schemaCaches = 
+         Collections.synchronizedMap(new WeakHashMap<>());
+   
    DSLContext dsl;
    MetamodelUtil metamodel;
+   JooqQueryCache cache;
    
    private JinqJooqContext(DSLContext context, Schema schema)
    {
       this.dsl = context;
       metamodel = new MetamodelUtil(schema);
+      cache = schemaCaches.computeIfAbsent(schema, s -> new JooqQueryCache());
    }
    
    public static JinqJooqContext using(DSLContext context, Schema schema)
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.stream.StreamSupport;
 
 import org.jinq.jooq.querygen.ColumnExpressions;
@@ -14,6 +13,7 @@ import org.jinq.jooq.querygen.TupleRowReader;
 import org.jinq.jooq.transform.LambdaInfo;
 import org.jinq.jooq.transform.SelectTransform;
 import org.jinq.jooq.transform.WhereTransform;
+import org.jinq.orm.stream.BatchingSpliterator;
 import org.jinq.orm.stream.NextOnlyIterator;
 import org.jooq.Condition;
 import org.jooq.Cursor;
@@ -49,12 +49,16 @@ public class JinqJooqQueryN
    public JinqJooqQueryN where(Object lambda)
    {
       if (whereConditions != null) throw new IllegalArgumentException("Multiple where() lambdas not supported");
-      LambdaInfo where = LambdaInfo.analyze(context.metamodel, lambda);
+      LambdaInfo where = LambdaInfo.analyze(context.metamodel, context.cache, lambda);
       if (where == null) throw new IllegalArgumentException("Could not create convert Lambda into a query");
-      WhereTransform whereTransform = new WhereTransform(context.metamodel, where);
       List<Table<?>> from = new ArrayList<>();
       from.addAll(fromTables);
-      Condition cond = whereTransform.apply(from);
+      Condition cond = context.cache.findCachedWhere(where, from);
+      if (cond == null)
+      {
+         WhereTransform whereTransform = new WhereTransform(context.metamodel, where);
+         cond = context.cache.cacheWhere(where, from, whereTransform.apply(from));
+      }
       return new JinqJooqQueryN(context, fromTables, cond);
    }
 
@@ -77,12 +81,16 @@ public class JinqJooqQueryN
    public <U> ResultStream<U> select(Object lambda)
    {
       // Figure out which columns to return
-      LambdaInfo select = LambdaInfo.analyze(context.metamodel, lambda);
+      LambdaInfo select = LambdaInfo.analyze(context.metamodel, context.cache, lambda);
       if (select == null) throw new IllegalArgumentException("Could not create convert Lambda into a query");
-      SelectTransform transform = new SelectTransform(context.metamodel, select);
       List<Table<?>> froms = new ArrayList<>();
       froms.addAll(fromTables);
-      ColumnExpressions<U> columns = transform.apply(froms);
+      ColumnExpressions<U> columns = context.cache.findCachedSelect(select, froms);
+      if (columns == null)
+      {
+         SelectTransform transform = new SelectTransform(context.metamodel, select);
+         columns = context.cache.cacheSelect(select, froms, transform.apply(froms));
+      }
 
       // Run the query now
       List<Field<?>> selectColumns = new ArrayList<>();
@@ -111,7 +119,7 @@ public class JinqJooqQueryN
          }
       };
       return new ResultStream<>(StreamSupport.stream(
-            Spliterators.spliteratorUnknownSize(
+            new BatchingSpliterator<>(
                   iterator, 
                   Spliterator.CONCURRENT), 
             false));
@@ -1,24 +1,101 @@
 package org.jinq.jooq.querygen;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.function.Supplier;
 
+import org.jooq.Converter;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Table;
 
 public class TableRowReader<T extends Record> implements RowReader<T>
 {
-   private Constructor<? extends T> constructor;
-   private Table<T> table;
-   
+   /**
+    * Factories for creating new records of each record class. A factory
+    * is generated the first time that records of a class are read so that
+    * records can be created without using reflection.
+    */
+   private static final ClassValue<Supplier<?>> recordFactories = new ClassValue<Supplier<?>>() {
+      @Override protected Supplier<?> computeValue(Class<?> recordType)
+      {
+         return createRecordFactory(recordType);
+      }
+   };
+
+   private final Supplier<? extends T> recordFactory;
+   private final Field<?>[] fields;
+   private final Converter<?, ?>[] converters;
+
+   @SuppressWarnings("unchecked")
    public TableRowReader(Table<T> table)
    {
-      this.table = table;
+      recordFactory = (Supplier<? extends T>)recordFactories.get(table.getRecordType());
+      // Table.fields() creates a new array each time it's called, so the
+      // fields and their converters are looked up once instead of for
+      // every row
+      fields = table.fields();
+      converters = new Converter<?, ?>[fields.length];
+      for (int idx = 0; idx < fields.length; idx++)
+         converters[idx] = fields[idx].getConverter();
+   }
+
+   private static Supplier<?> createRecordFactory(Class<?> recordType)
+   {
+      Constructor<?> constructor;
       try {
-         constructor = table.getRecordType().getDeclaredConstructor();
+         constructor = recordType.getDeclaredConstructor();
       } catch (Exception e) {
-         throw new IllegalArgumentException("Cannot find constructor for class " + table.getRecordType().getName());
+         throw new IllegalArgumentException("Cannot find constructor for class " + recordType.getName());
+      }
+      Supplier<?> reflectiveFactory = () -> {
+         try {
+            return constructor.newInstance();
+         } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot construct class " + recordType.getName());
+         }
+      };
+      Supplier<?> generatedFactory;
+      try {
+         // The generated factory can only refer to record classes that
+         // are visible from here
+         if (Class.forName(recordType.getName(), false, TableRowReader.class.getClassLoader()) != recordType)
+            return reflectiveFactory;
+         MethodHandles.Lookup lookup = MethodHandles.lookup();
+         MethodHandle constructorHandle = lookup.unreflectConstructor(constructor);
+         CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+               MethodType.methodType(Supplier.class),
+               MethodType.methodType(Object.class),
+               constructorHandle,
+               MethodType.methodType(recordType));
+         generatedFactory = (Supplier<?>)site.getTarget().invoke();
       }
+      catch (Throwable e)
+      {
+         return reflectiveFactory;
+      }
+      // If the generated factory turns out not to be able to create 
+      // records, records are created reflectively from then on
+      return new Supplier<Object>() {
+         volatile Supplier<?> factory = generatedFactory;
+         @Override public Object get()
+         {
+            Supplier<?> current = factory;
+            try {
+               return current.get();
+            }
+            catch (LinkageError e)
+            {
+               if (current == reflectiveFactory) throw e;
+               factory = reflectiveFactory;
+               return reflectiveFactory.get();
+            }
+         }
+      };
    }
 
    @Override
@@ -30,35 +107,26 @@ public class TableRowReader<T extends Record> implements RowReader<T>
    @Override
    public T readResult(Record record, int offset)
    {
-      T toReturn;
-      try {
-         toReturn = constructor.newInstance();
-      } catch (Exception e) {
-         throw new IllegalArgumentException("Cannot construct class " + table.getRecordType().getName());
-      }
-      Field<?>[] fields = table.fields(); 
+      T toReturn = recordFactory.get();
       for (int idx = 0; idx < fields.length; idx++)
-      {
-         Field<?> f = fields[idx];
-         copyValueIntoRecord(toReturn, record, f, idx);
-      }
+         copyValueIntoRecord(toReturn, record, fields[idx], converters[idx], offset + idx);
       return toReturn;
    }
-   
-   private <K> void copyValueIntoRecord(T outputRecord, Record inputRecord, Field<K> field, int idx)
+
+   @SuppressWarnings("unchecked")
+   private static <K> void copyValueIntoRecord(Record outputRecord, Record inputRecord, Field<K> field, Converter<?, ?> converter, int idx)
    {
-      outputRecord.setValue(field, inputRecord.getValue(idx, field.getConverter()));
+      outputRecord.set(field, inputRecord.get(idx, (Converter<?, K>)converter));
    }
 
    @Override
    public int getNumColumns()
    {
-      return table.fields().length;
+      return fields.length;
    }
 
    public <U> RowReader<U> getReaderForField(Field<?> field)
    {
-      Field<?>[] fields = table.fields(); 
       for (int idx = 0; idx < fields.length; idx++)
       {
          Field<?> f = fields[idx];
@@ -67,10 +135,9 @@ public class TableRowReader<T extends Record> implements RowReader<T>
       }
       throw new IllegalArgumentException("Unknown field");
    }
-   
+
    public int getIndexForField(Field<?> field)
    {
-      Field<?>[] fields = table.fields();
       int colIndex = 0;
       for (int idx = 0; idx < fields.length; idx++)
       {
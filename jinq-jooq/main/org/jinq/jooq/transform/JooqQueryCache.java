@@ -0,0 +1,166 @@
+package org.jinq.jooq.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jinq.jooq.querygen.ColumnExpressions;
+import org.jooq.Condition;
+import org.jooq.Table;
+
+import ch.epfl.labos.iu.orm.queryll2.path.MethodAnalysisResults;
+
+/**
+ * Caches the analysis of lambdas and their translation into jOOQ query
+ * parts so that the work does not have to be repeated when the same
+ * query is run again. The cache can be safely shared by many threads.
+ *
+ * The bytecode analysis of every lambda is cached. The translation of a
+ * lambda into a condition or columns is only cached for lambdas that do
+ * not capture any variables. The values of captured variables are
+ * embedded into the generated query parts, so those lambdas are translated
+ * again from their cached analysis each time they are used.
+ *
+ * The cache holds a bounded number of entries. Once it is full, new
+ * entries are simply not cached.
+ */
+public class JooqQueryCache
+{
+   /**
+    * Internal key used to represent the translation of a lambda.
+    */
+   private static class TranslationKey
+   {
+      TranslationKey(String transformationType, String lambdaSource, List<Table<?>> fromTables)
+      {
+         this.transformationType = transformationType;
+         this.lambdaSource = lambdaSource;
+         this.fromTables = new ArrayList<>(fromTables);
+      }
+      final String transformationType;
+      final String lambdaSource;
+      final List<Table<?>> fromTables;
+
+      @Override
+      public int hashCode()
+      {
+         final int prime = 31;
+         int result = 1;
+         result = prime * result + fromTables.hashCode();
+         result = prime * result + lambdaSource.hashCode();
+         result = prime * result + transformationType.hashCode();
+         return result;
+      }
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (this == obj)
+            return true;
+         if (obj == null)
+            return false;
+         if (getClass() != obj.getClass())
+            return false;
+         TranslationKey other = (TranslationKey) obj;
+         return transformationType.equals(other.transformationType)
+               && lambdaSource.equals(other.lambdaSource)
+               && fromTables.equals(other.fromTables);
+      }
+   }
+
+   /**
+    * Default maximum number of lambda analyses and translations that are
+    * cached.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+   private final int maxEntries;
+
+   /**
+    * Maps from the description of a lambda method to the analysis of
+    * that method. Lambdas that cannot be analyzed are cached as an
+    * empty Optional.
+    */
+   final ConcurrentMap<String, Optional<MethodAnalysisResults>> cachedLambdaAnalysis = new ConcurrentHashMap<>();
+
+   /**
+    * Maps from a lambda and the tables it is applied to onto the
+    * Condition or ColumnExpressions that it was translated into.
+    */
+   final ConcurrentMap<TranslationKey, Object> cachedTranslations = new ConcurrentHashMap<>();
+
+   public JooqQueryCache()
+   {
+      this(DEFAULT_MAX_ENTRIES);
+   }
+
+   public JooqQueryCache(int maxEntries)
+   {
+      this.maxEntries = maxEntries;
+   }
+
+   /**
+    * @return the cached analysis of a lambda or null if the lambda has
+    *    not been analyzed yet
+    */
+   public Optional<MethodAnalysisResults> findCachedLambdaAnalysis(String lambdaSource)
+   {
+      return cachedLambdaAnalysis.get(lambdaSource);
+   }
+
+   /**
+    * Caches the analysis of a lambda. If another thread already cached an
+    * analysis of the lambda, that analysis is returned instead.
+    */
+   public Optional<MethodAnalysisResults> cacheLambdaAnalysis(String lambdaSource, Optional<MethodAnalysisResults> analysis)
+   {
+      if (cachedLambdaAnalysis.size() >= maxEntries) return analysis;
+      Optional<MethodAnalysisResults> existing = cachedLambdaAnalysis.putIfAbsent(lambdaSource, analysis);
+      return existing != null ? existing : analysis;
+   }
+
+   /**
+    * @return the condition that a where lambda was translated into when it
+    *    was used with the given tables or null if it isn't cached
+    */
+   public Condition findCachedWhere(LambdaInfo where, List<Table<?>> fromTables)
+   {
+      return (Condition)findCachedTranslation("where", where, fromTables);
+   }
+
+   public Condition cacheWhere(LambdaInfo where, List<Table<?>> fromTables, Condition condition)
+   {
+      return (Condition)cacheTranslation("where", where, fromTables, condition);
+   }
+
+   /**
+    * @return the columns that a select lambda was translated into when it
+    *    was used with the given tables or null if it isn't cached
+    */
+   @SuppressWarnings("unchecked")
+   public <U> ColumnExpressions<U> findCachedSelect(LambdaInfo select, List<Table<?>> fromTables)
+   {
+      return (ColumnExpressions<U>)findCachedTranslation("select", select, fromTables);
+   }
+
+   @SuppressWarnings("unchecked")
+   public <U> ColumnExpressions<U> cacheSelect(LambdaInfo select, List<Table<?>> fromTables, ColumnExpressions<U> columns)
+   {
+      return (ColumnExpressions<U>)cacheTranslation("select", select, fromTables, columns);
+   }
+
+   private Object findCachedTranslation(String transformationType, LambdaInfo lambda, List<Table<?>> fromTables)
+   {
+      if (lambda.hasCapturedArgs()) return null;
+      return cachedTranslations.get(new TranslationKey(transformationType, lambda.getLambdaSourceString(), fromTables));
+   }
+
+   private Object cacheTranslation(String transformationType, LambdaInfo lambda, List<Table<?>> fromTables, Object translation)
+   {
+      if (translation == null || lambda.hasCapturedArgs()) return translation;
+      if (cachedTranslations.size() >= maxEntries) return translation;
+      Object existing = cachedTranslations.putIfAbsent(new TranslationKey(transformationType, lambda.getLambdaSourceString(), fromTables), translation);
+      return existing != null ? existing : translation;
+   }
+}
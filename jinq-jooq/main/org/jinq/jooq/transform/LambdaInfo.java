@@ -2,6 +2,7 @@ package org.jinq.jooq.transform;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Optional;
 
 import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
 
@@ -23,6 +24,15 @@ public class LambdaInfo
    MethodAnalysisResults symbolicAnalysis;
    
    public static LambdaInfo analyze(MetamodelUtil metamodel, Object lambda)
+   {
+      return analyze(metamodel, null, lambda);
+   }
+   
+   /**
+    * Analyzes a lambda, reusing the results of an earlier analysis of the
+    * same lambda method if one is available in the cache.
+    */
+   public static LambdaInfo analyze(MetamodelUtil metamodel, JooqQueryCache cache, Object lambda)
    {
       SerializedLambda s;
       try {
@@ -33,15 +43,26 @@ public class LambdaInfo
          return null;
       }
       if (s == null) return null;
-      // TODO: The part below will need to be moved to a separate method.
-      //   That way, we can used the serialized lambda info to check if
-      //   we've cached the results of this analysis already without needing
-      //   to redo all this analysis.
-      MethodAnalysisResults analysis = analyzeLambda(metamodel, s);
+      MethodAnalysisResults analysis;
+      if (cache != null)
+      {
+         String lambdaSource = lambdaSourceString(s);
+         Optional<MethodAnalysisResults> cached = cache.findCachedLambdaAnalysis(lambdaSource);
+         if (cached == null)
+            cached = cache.cacheLambdaAnalysis(lambdaSource, Optional.ofNullable(analyzeLambda(metamodel, s)));
+         analysis = cached.orElse(null);
+      }
+      else
+         analysis = analyzeLambda(metamodel, s);
       if (analysis == null) return null;
       return new LambdaInfo(lambda, s, analysis);
    }
    
+   private static String lambdaSourceString(SerializedLambda s)
+   {
+      return s.implClass + "#" + s.implMethodName + s.implMethodSignature;
+   }
+   
    private static MethodAnalysisResults analyzeLambda(MetamodelUtil metamodel, SerializedLambda lambda) 
    {
       if (lambda == null) return null;
@@ -82,4 +103,17 @@ public class LambdaInfo
    {
       return serializedLambda.capturedArgs[argIndex];
    }
+   
+   public boolean hasCapturedArgs()
+   {
+      return serializedLambda.capturedArgs.length > 0;
+   }
+   
+   /**
+    * @return a string identifying the method holding the code of the lambda
+    */
+   public String getLambdaSourceString()
+   {
+      return lambdaSourceString(serializedLambda);
+   }
 }
@@ -141,6 +141,16 @@ public class SymbExToColumns extends TypedValueVisitor<Void, ColumnExpressions<?
       }
       return ColumnExpressions.singleColumn(left.reader, result);
    }
+
+   @Override public ColumnExpressions<?> logicalOpValue(TypedValue.LogicalOpValue val, Void in) throws TypedValueVisitorException
+   {
+      ColumnExpressions<?> left = val.left.visit(this, in);
+      ColumnExpressions<?> right = val.right.visit(this, in);
+      Condition leftCondition = (Condition)left.getOnlyColumn();
+      Condition rightCondition = (Condition)right.getOnlyColumn();
+      Condition result = val.isAnd() ? leftCondition.and(rightCondition) : leftCondition.or(rightCondition);
+      return ColumnExpressions.singleColumn(left.reader, result);
+   }
    
    @Override public ColumnExpressions<?> virtualMethodCallValue(MethodCallValue.VirtualMethodCallValue val, Void in) throws TypedValueVisitorException
    {
@@ -75,6 +75,10 @@ public class JinqJooqFromTest
       assertEquals(2, results.size());
       assertEquals("Alice", results.get(0).getOne().getName());
       assertEquals("Alice", results.get(1).getOne().getName());
+      // Records of the second table are read from the columns after the
+      // columns of the first table
+      for (Pair<CustomersRecord, SalesRecord> pair: results)
+         assertEquals(pair.getOne().getCustomerid(), pair.getTwo().getCustomerid());
    }
 
    @Test
@@ -2,9 +2,11 @@ package org.jinq.jooq;
 
 import static org.jinq.jooq.test.generated.Tables.CUSTOMERS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -109,6 +111,32 @@ public class JinqJooqTest
       assertEquals("Eve", results.get(0).getName());
    }
 
+   @Test
+   public void testCachedQueries()
+   {
+      // Queries on the same schema share a cache
+      assertSame(jinq.cache, JinqJooqContext.using(context, App.APP).cache);
+      for (int n = 0; n < 2; n++)
+      {
+         List<String> results = jinq.from(CUSTOMERS)
+               .where( c -> c.getCountry().equals("UK"))
+               .select( c -> c.getName() ).toList();
+         assertEquals(Collections.singletonList("Dave"), results);
+      }
+      // Lambdas with captured parameters must not reuse the old values
+      for (int amount: new int[] {10, 150})
+      {
+         List<String> results = jinq.from(CUSTOMERS)
+               .where( c -> c.getDebt() <= amount )
+               .select( c -> c.getName() ).toList();
+         Collections.sort(results);
+         if (amount == 10)
+            assertEquals(Collections.singletonList("Eve"), results);
+         else
+            assertEquals(Arrays.asList("Alice", "Dave", "Eve"), results);
+      }
+   }
+
    @Test
    public void testSelect()
    {
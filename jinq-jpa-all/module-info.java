@@ -11,6 +11,7 @@ module org.jinq.jpa {
    requires jakarta.persistence;
    requires java.sql;
    requires org.jinq.asmrebased;
+   requires transitive org.reactivestreams;
    exports org.jinq.jpa;
    exports org.jinq.tuples;
    exports org.jinq.orm.internal;
@@ -1,12 +1,13 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class CaseWhenExpression extends Expression
 {
-   public static class ConditionResult
+   public static class ConditionResult implements Serializable
    {
       public Expression condition;
       public Expression result;
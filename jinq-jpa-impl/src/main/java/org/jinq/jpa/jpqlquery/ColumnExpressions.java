@@ -1,5 +1,6 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,7 +9,7 @@ import java.util.List;
  * reader used to interpret the returned result as an object.
  *
  */
-public class ColumnExpressions<T>
+public class ColumnExpressions<T> implements Serializable
 {
    public List<Expression> columns = new ArrayList<>();
    public RowReader<T> reader;
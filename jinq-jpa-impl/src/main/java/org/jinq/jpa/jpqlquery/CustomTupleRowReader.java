@@ -1,11 +1,16 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
- * Used to read data into a custom tuple
+ * Used to read data into a custom tuple. The reader holds reflection objects
+ * for the builder of the tuple, so it cannot be serialized.
  */
 public class CustomTupleRowReader<T> implements RowReader<T>
 {
@@ -13,6 +18,21 @@ public class CustomTupleRowReader<T> implements RowReader<T>
    Constructor constructor;
    RowReader<?>[] subreaders;
    
+   /**
+    * Method handle for the builder method or constructor that takes an
+    * array of the tuple elements. It is looked up when the query is 
+    * generated so that each row can be built without reflection. It is 
+    * null if the builder is not accessible through a method handle, in 
+    * which case reflection is used instead.
+    */
+   final MethodHandle builderHandle;
+   
+   /**
+    * The column where the data for each element of the tuple starts
+    */
+   final int[] columnOffsets;
+   final int numColumns;
+   
    public CustomTupleRowReader(Method staticBuilder, Constructor constructor, RowReader<?>[] subreaders)
    {
       if (staticBuilder == null && constructor == null)
@@ -20,14 +40,37 @@ public class CustomTupleRowReader<T> implements RowReader<T>
       this.staticBuilder = staticBuilder;
       this.constructor = constructor;
       this.subreaders = subreaders;
+      columnOffsets = new int[subreaders.length];
+      int offset = 0;
+      for (int n = 0; n < subreaders.length; n++)
+      {
+         columnOffsets[n] = offset;
+         offset += subreaders[n].getNumColumns();
+      }
+      numColumns = offset;
+      builderHandle = createBuilderHandle(staticBuilder, constructor, subreaders.length);
+   }
+   
+   private static MethodHandle createBuilderHandle(Method staticBuilder, Constructor constructor, int numArgs)
+   {
+      try {
+         MethodHandle handle;
+         if (staticBuilder != null)
+            handle = MethodHandles.lookup().unreflect(staticBuilder);
+         else
+            handle = MethodHandles.lookup().unreflectConstructor(constructor);
+         return handle.asSpreader(Object[].class, numArgs)
+               .asType(MethodType.methodType(Object.class, Object[].class));
+      }
+      catch (IllegalAccessException | IllegalArgumentException | WrongMethodTypeException e)
+      {
+         return null;
+      }
    }
 
    @Override public int getNumColumns()
    {
-      int sum = 0;
-      for (int n = 0; n < subreaders.length; n++)
-         sum += subreaders[n].getNumColumns();
-      return sum;
+      return numColumns;
    }
    
    @Override
@@ -42,11 +85,16 @@ public class CustomTupleRowReader<T> implements RowReader<T>
    public T readResult(Object[] results, int start)
    {
       Object [] data = new Object[subreaders.length];
-      int offset = 0;
       for (int n = 0; n < subreaders.length; n++)
+         data[n] = subreaders[n].readResult(results, start + columnOffsets[n]);
+      if (builderHandle != null)
       {
-         data[n] = subreaders[n].readResult(results, start + offset);
-         offset += subreaders[n].getNumColumns();
+         try {
+            return (T)builderHandle.invokeExact(data);
+         } catch (Throwable e)
+         {
+            throw new IllegalArgumentException("Cannot invoke constructor or builder method for custom tuple", e);
+         }
       }
       try {
          if (staticBuilder != null)
@@ -63,10 +111,7 @@ public class CustomTupleRowReader<T> implements RowReader<T>
    public int getColumnForIndex(int index)
    {
       if (index < 0 || index >= subreaders.length) return -1;
-      int offset = 0;
-      for (int n = 0; n < index; n++)
-         offset += subreaders[n].getNumColumns();
-      return offset;
+      return columnOffsets[index];
    }
 
    public RowReader<?> getReaderForIndex(int index)
@@ -0,0 +1,204 @@
+package org.jinq.jpa.jpqlquery;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+
+/**
+ * Finds the entities whose data is used by a query. This includes the
+ * entities listed in the FROM clauses of the query and its subqueries
+ * as well as any entities reached by navigating associations.
+ */
+public class EntityDependencyFinder extends RecursiveExpressionVisitor
+{
+   final Metamodel metamodel;
+   final Set<EntityType<?>> entities = new HashSet<>();
+   boolean isComplete = true;
+
+   EntityDependencyFinder(Metamodel metamodel)
+   {
+      this.metamodel = metamodel;
+   }
+
+   /**
+    * @return the entities used by a query or null if some of the entities
+    *    used by the query could not be determined
+    */
+   public static Set<EntityType<?>> findEntities(JPQLQuery<?> query, Metamodel metamodel)
+   {
+      if (!(query instanceof SelectFromWhere)) return null;
+      EntityDependencyFinder finder = new EntityDependencyFinder(metamodel);
+      finder.visitQuery((SelectFromWhere<?>)query);
+      return finder.isComplete ? finder.entities : null;
+   }
+
+   /**
+    * @return true if the results of a query might hold entities (as 
+    *    opposed to only holding plain values), including when the types 
+    *    of the results can't be determined
+    */
+   public static boolean mayReturnEntities(JPQLQuery<?> query, Metamodel metamodel)
+   {
+      if (!(query instanceof SelectFromWhere)) return true;
+      SelectFromWhere<?> sfw = (SelectFromWhere<?>)query;
+      if (sfw.cols == null) return true;
+      EntityDependencyFinder finder = new EntityDependencyFinder(metamodel);
+      for (Expression col: sfw.cols.columns)
+      {
+         if (col instanceof FromAliasExpression)
+         {
+            ManagedType<?> type = finder.findType(col);
+            if (type == null || type instanceof EntityType)
+               return true;
+         }
+         else if (col instanceof ReadFieldExpression)
+         {
+            ReadFieldExpression readField = (ReadFieldExpression)col;
+            ManagedType<?> baseType = finder.findType(readField.base);
+            if (baseType == null) return true;
+            Type<?> type = findFieldType(baseType, readField.field);
+            if (type == null || type instanceof EntityType)
+               return true;
+         }
+         else if (col instanceof SubqueryExpression)
+            return true;
+      }
+      return false;
+   }
+
+   void visitQuery(SelectFromWhere<?> query)
+   {
+      for (From from: query.froms)
+      {
+         if (from instanceof From.FromEntity)
+         {
+            EntityType<?> entity = findEntity(((From.FromEntity)from).entityName);
+            if (entity == null)
+               isComplete = false;
+            else
+               entities.add(entity);
+            if (from instanceof From.FromEntityLeftOuterJoinOn)
+               visitIfNotNull(((From.FromEntityLeftOuterJoinOn)from).onExpr);
+         }
+         else if (from instanceof From.FromNavigationalLinksGeneric)
+         {
+            ((From.FromNavigationalLinksGeneric)from).links.visit(this);
+            if (from instanceof From.FromNavigationalLinksLeftOuterJoinOn)
+               visitIfNotNull(((From.FromNavigationalLinksLeftOuterJoinOn)from).onExpr);
+         }
+         else
+            isComplete = false;
+      }
+      visitIfNotNull(query.where);
+      if (query.cols != null)
+      {
+         for (Expression col: query.cols.columns)
+            col.visit(this);
+      }
+      for (SelectFromWhere.SortingParameters sort: query.sort)
+         sort.expr.visit(this);
+      if (query instanceof GroupedSelectFromWhere)
+      {
+         GroupedSelectFromWhere<?, ?> grouped = (GroupedSelectFromWhere<?, ?>)query;
+         if (grouped.groupingCols != null)
+         {
+            for (Expression col: grouped.groupingCols.columns)
+               col.visit(this);
+         }
+         visitIfNotNull(grouped.having);
+      }
+   }
+
+   private void visitIfNotNull(Expression expr)
+   {
+      if (expr != null) expr.visit(this);
+   }
+
+   private EntityType<?> findEntity(String entityName)
+   {
+      for (EntityType<?> entity: metamodel.getEntities())
+      {
+         if (entity.getName().equals(entityName))
+            return entity;
+      }
+      return null;
+   }
+
+   @Override
+   public void visitReadField(ReadFieldExpression expr)
+   {
+      // Reading an association brings in the data of another entity
+      ManagedType<?> baseType = findType(expr.base);
+      if (baseType == null)
+         isComplete = false;
+      else
+      {
+         Type<?> fieldType = findFieldType(baseType, expr.field);
+         if (fieldType == null)
+            isComplete = false;
+         else if (fieldType instanceof EntityType)
+            entities.add((EntityType<?>)fieldType);
+      }
+      super.visitReadField(expr);
+   }
+
+   @Override
+   public void visitSubquery(SubqueryExpression expr)
+   {
+      visitQuery(expr.subquery);
+      super.visitSubquery(expr);
+   }
+
+   /**
+    * @return the entity or embeddable type of the values of an expression,
+    *    or null if it isn't known
+    */
+   private ManagedType<?> findType(Expression expr)
+   {
+      Type<?> type = null;
+      if (expr instanceof FromAliasExpression)
+      {
+         From from = ((FromAliasExpression)expr).from;
+         if (from instanceof From.FromEntity)
+            return findEntity(((From.FromEntity)from).entityName);
+         else if (from instanceof From.FromNavigationalLinksGeneric)
+            return findType(((From.FromNavigationalLinksGeneric)from).links);
+      }
+      else if (expr instanceof ReadFieldExpression)
+      {
+         ReadFieldExpression readField = (ReadFieldExpression)expr;
+         ManagedType<?> baseType = findType(readField.base);
+         if (baseType != null)
+            type = findFieldType(baseType, readField.field);
+      }
+      return type instanceof ManagedType ? (ManagedType<?>)type : null;
+   }
+
+   /**
+    * @return the type of a field or the type of the elements of a
+    *    collection field, or null if there's no such field
+    */
+   private static Type<?> findFieldType(ManagedType<?> type, String field)
+   {
+      Attribute<?, ?> attribute;
+      try {
+         attribute = type.getAttribute(field);
+      }
+      catch (IllegalArgumentException e)
+      {
+         return null;
+      }
+      if (attribute instanceof SingularAttribute)
+         return ((SingularAttribute<?, ?>)attribute).getType();
+      else if (attribute instanceof PluralAttribute)
+         return ((PluralAttribute<?, ?, ?>)attribute).getElementType();
+      return null;
+   }
+}
@@ -1,7 +1,8 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.io.Serializable;
 
-public abstract class Expression
+public abstract class Expression implements Serializable
 {
    enum QueryGenerationPreparationPhase
    {
@@ -1,11 +1,13 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.io.Serializable;
+
 /**
  * When generating a JPQL query string, we also need to store a list of generated 
  * parameters that will need to substituted into the query before the query can be
  * run. This class is the data structure holding info about these parameters.
  */
-public class GeneratedQueryParameter
+public class GeneratedQueryParameter implements Serializable
 {
    // TODO: It doesn't feel right to make these public, but using these parameters
    //    requires knowledge of LambdaInfo, and I don't want this package to depend
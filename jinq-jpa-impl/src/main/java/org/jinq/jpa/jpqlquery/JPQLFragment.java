@@ -1,6 +1,8 @@
 package org.jinq.jpa.jpqlquery;
 
-public interface JPQLFragment
+import java.io.Serializable;
+
+public interface JPQLFragment extends Serializable
 {
 
 }
@@ -0,0 +1,88 @@
+package org.jinq.jpa.jpqlquery;
+
+/**
+ * Holds the queries needed to read the results of a simple query over
+ * a single entity in pages using keyset pagination. The results are
+ * sorted by the id of the entity, and each page after the first one only
+ * asks for entities with an id larger than the last id seen on the previous
+ * page. Unlike paging with offsets, the database does not need to step
+ * over all the earlier results to find the start of a later page.
+ *
+ * Both queries return the id of the entity as an extra column after
+ * the normal columns of the query.
+ */
+public class KeysetPagingQuery<T>
+{
+   /**
+    * Name of the query parameter that holds the last id read on the
+    * previous page.
+    */
+   public static final String LAST_KEY_PARAMETER = "jinqKeysetLastKey";
+
+   final String idField;
+   final SelectFromWhere<T> firstPage;
+   final SelectFromWhere<T> nextPage;
+
+   KeysetPagingQuery(SelectFromWhere<T> query, String idField)
+   {
+      this.idField = idField;
+      From from = query.froms.get(0);
+      Expression idExpr = new ReadFieldExpression(new FromAliasExpression(from), idField);
+      ColumnExpressions<T> cols = new ColumnExpressions<>(query.cols.reader);
+      cols.columns.addAll(query.cols.columns);
+      cols.columns.add(idExpr);
+      SelectFromWhere.SortingParameters sort = new SelectFromWhere.SortingParameters();
+      sort.expr = idExpr;
+      sort.isAscending = true;
+
+      firstPage = query.shallowCopy();
+      firstPage.cols = cols;
+      firstPage.sort.add(sort);
+      firstPage.limit = -1;
+      firstPage.skip = -1;
+      firstPage.isLimitReducedBySkip = false;
+
+      nextPage = firstPage.shallowCopy();
+      Expression afterLastKey = new BinaryExpression(">", idExpr, new ConstantExpression(":" + LAST_KEY_PARAMETER));
+      if (nextPage.where == null)
+         nextPage.where = afterLastKey;
+      else
+         nextPage.where = new BinaryExpression("AND", nextPage.where, afterLastKey);
+   }
+
+   /**
+    * @return query for reading the first page of results
+    */
+   public JPQLQuery<T> getFirstPageQuery()
+   {
+      return firstPage;
+   }
+
+   /**
+    * @return query for reading the pages after the first one. The
+    *    LAST_KEY_PARAMETER parameter must be filled in with the last id
+    *    read from the previous page.
+    */
+   public JPQLQuery<T> getNextPageQuery()
+   {
+      return nextPage;
+   }
+
+   /**
+    * Reads a result from a row returned by one of the paging queries
+    */
+   public T readResult(Object result)
+   {
+      return firstPage.cols.reader.readResult((Object[])result, 0);
+   }
+
+   /**
+    * Reads the id of the entity from a row returned by one of the
+    * paging queries
+    */
+   public Object readKey(Object result)
+   {
+      Object[] row = (Object[])result;
+      return row[row.length - 1];
+   }
+}
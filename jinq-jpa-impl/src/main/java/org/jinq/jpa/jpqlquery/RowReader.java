@@ -1,6 +1,8 @@
 package org.jinq.jpa.jpqlquery;
 
-public interface RowReader<T>
+import java.io.Serializable;
+
+public interface RowReader<T> extends Serializable
 {
    T readResult(Object result);
    T readResult(Object[] results, int offset);
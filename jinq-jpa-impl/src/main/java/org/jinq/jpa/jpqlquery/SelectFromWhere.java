@@ -1,5 +1,6 @@
 package org.jinq.jpa.jpqlquery;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,13 +9,26 @@ public class SelectFromWhere<T> extends SelectOnly<T>
    public List<From> froms = new ArrayList<>();
    public Expression where;
    public List<SortingParameters> sort = new ArrayList<>();
-   public long limit = -1;
-   public long skip = -1;
+   /**
+    * The limit and skip amounts aren't stored in the query itself so that 
+    * queries that differ only by those amounts (e.g. different pages of the
+    * same results) can share the same cached query. Instead, these fields 
+    * hold the index of the amount among the values passed to limit() and 
+    * skip() that are supplied when the query is executed, or -1 if the query 
+    * has no limit or skip.
+    */
+   public int limit = -1;
+   public int skip = -1;
+   /**
+    * Whether the skip was applied after the limit, meaning that the
+    * skip amount must be subtracted from the limit. 
+    */
+   public boolean isLimitReducedBySkip = false;
    
    /**
     * Holds information needed to do a sort. 
     */
-   public static class SortingParameters
+   public static class SortingParameters implements Serializable
    {
       public Expression expr;
       public boolean isAscending;
@@ -29,6 +43,11 @@ public class SelectFromWhere<T> extends SelectOnly<T>
     * filled-in, in the query  
     */
    private List<GeneratedQueryParameter> queryParameters;
+   /**
+    * Stores the queries used for keyset pagination once they are created.
+    * They are created again if the query is deserialized.
+    */
+   private transient KeysetPagingQuery<T> keysetPaging;
    
    protected void generateQuery()
    {
@@ -132,6 +151,33 @@ public class SelectFromWhere<T> extends SelectOnly<T>
       }
    }
    
+   /**
+    * @param limitSkipValues the values passed to limit() and skip() when 
+    *    creating the query
+    * @return the maximum number of results the query should return, or -1
+    *    if there is no limit
+    */
+   public long getLimitAmount(List<Long> limitSkipValues)
+   {
+      if (limit < 0) return -1;
+      long amount = limitSkipValues.get(limit);
+      if (isLimitReducedBySkip)
+         amount = Math.max(0, amount - limitSkipValues.get(skip));
+      return amount;
+   }
+   
+   /**
+    * @param limitSkipValues the values passed to limit() and skip() when 
+    *    creating the query
+    * @return the number of results the query should skip, or -1 if there 
+    *    is no skip
+    */
+   public long getSkipAmount(List<Long> limitSkipValues)
+   {
+      if (skip < 0) return -1;
+      return limitSkipValues.get(skip);
+   }
+   
    @Override
    public String getQueryString()
    {
@@ -195,6 +241,38 @@ public class SelectFromWhere<T> extends SelectOnly<T>
       return limit < 0 && skip < 0 && sort.isEmpty();
    }
    
+   /**
+    * Keyset pagination can be used for simple queries over a single entity
+    * that aren't sorted in some other way.
+    */
+   public boolean canKeysetPage()
+   {
+      return this.getClass() == SelectFromWhere.class && !isAggregated && !isDistinct
+            && sort.isEmpty() && froms.size() == 1
+            && froms.get(0).getClass() == From.FromEntity.class;
+   }
+   
+   /**
+    * @return the name of the entity whose id is used for keyset pagination
+    */
+   public String getKeysetPagingEntityName()
+   {
+      return ((From.FromEntity)froms.get(0)).entityName;
+   }
+   
+   public KeysetPagingQuery<T> getKeysetPagingQuery(String idField)
+   {
+      // Queries are cached and reused, so the paging queries are built
+      // only once too
+      KeysetPagingQuery<T> paging = keysetPaging;
+      if (paging == null || !paging.idField.equals(idField))
+      {
+         paging = new KeysetPagingQuery<>(this, idField);
+         keysetPaging = paging;
+      }
+      return paging;
+   }
+   
    public <U> GroupedSelectFromWhere<T, U> shallowCopyWithGrouping()
    {
       GroupedSelectFromWhere<T, U> copy = new GroupedSelectFromWhere<>();
@@ -211,6 +289,7 @@ public class SelectFromWhere<T> extends SelectOnly<T>
       copy.sort.addAll(sort);
       copy.limit = limit;
       copy.skip = skip;
+      copy.isLimitReducedBySkip = isLimitReducedBySkip;
       copy.isDistinct = isDistinct;
    }
    
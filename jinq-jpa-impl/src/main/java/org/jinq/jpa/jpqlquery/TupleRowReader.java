@@ -20,17 +20,31 @@ public class TupleRowReader<T> implements RowReader<T>
    
    RowReader<?>[] subreaders;
    
+   /**
+    * The column where the data for each element of the tuple starts. 
+    * Readers are created when a query is generated and are cached along
+    * with the query, so these offsets are only calculated once instead of
+    * for every row.
+    */
+   final int[] columnOffsets;
+   final int numColumns;
+   
    TupleRowReader(RowReader<?>[] subreaders)
    {
       this.subreaders = subreaders;
+      columnOffsets = new int[subreaders.length];
+      int offset = 0;
+      for (int n = 0; n < subreaders.length; n++)
+      {
+         columnOffsets[n] = offset;
+         offset += subreaders[n].getNumColumns();
+      }
+      numColumns = offset;
    }
 
    @Override public int getNumColumns()
    {
-      int sum = 0;
-      for (int n = 0; n < subreaders.length; n++)
-         sum += subreaders[n].getNumColumns();
-      return sum;
+      return numColumns;
    }
    
    @Override
@@ -44,14 +58,39 @@ public class TupleRowReader<T> implements RowReader<T>
    @Override
    public T readResult(Object[] results, int start)
    {
-      Object [] data = new Object[subreaders.length];
-      int offset = 0;
-      for (int n = 0; n < subreaders.length; n++)
+      // The elements are read directly into the constructor of the tuple 
+      // so that no intermediate array needs to be allocated for each row
+      switch(subreaders.length)
       {
-         data[n] = subreaders[n].readResult(results, start + offset);
-         offset += subreaders[n].getNumColumns();
+         case 2:
+            return (T)new Pair(read(0, results, start), read(1, results, start));
+         case 3:
+            return (T)new Tuple3(read(0, results, start), read(1, results, start), read(2, results, start));
+         case 4:
+            return (T)new Tuple4(read(0, results, start), read(1, results, start), read(2, results, start), 
+                  read(3, results, start));
+         case 5:
+            return (T)new Tuple5(read(0, results, start), read(1, results, start), read(2, results, start), 
+                  read(3, results, start), read(4, results, start));
+         case 6:
+            return (T)new Tuple6(read(0, results, start), read(1, results, start), read(2, results, start), 
+                  read(3, results, start), read(4, results, start), read(5, results, start));
+         case 7:
+            return (T)new Tuple7(read(0, results, start), read(1, results, start), read(2, results, start), 
+                  read(3, results, start), read(4, results, start), read(5, results, start), 
+                  read(6, results, start));
+         case 8:
+            return (T)new Tuple8(read(0, results, start), read(1, results, start), read(2, results, start), 
+                  read(3, results, start), read(4, results, start), read(5, results, start), 
+                  read(6, results, start), read(7, results, start));
+         default:
+            throw new IllegalArgumentException("Creating a tuple with a SQLReader with unknown size " + subreaders.length);
       }
-      return createTuple(data);
+   }
+   
+   private Object read(int index, Object[] results, int start)
+   {
+      return subreaders[index].readResult(results, start + columnOffsets[index]);
    }
    
 //   private int getFieldIndex(String field)
@@ -79,10 +118,7 @@ public class TupleRowReader<T> implements RowReader<T>
    public int getColumnForIndex(int index)
    {
       if (index < 0 || index >= subreaders.length) return -1;
-      int offset = 0;
-      for (int n = 0; n < index; n++)
-         offset += subreaders[n].getNumColumns();
-      return offset;
+      return columnOffsets[index];
    }
 
    public RowReader<?> getReaderForIndex(int index)
@@ -91,29 +127,6 @@ public class TupleRowReader<T> implements RowReader<T>
       return subreaders[index];
    }
 
-   private T createTuple(Object[] data)
-   {
-      switch(subreaders.length)
-      {
-         case 2:
-            return (T)new Pair(data[0], data[1]);
-         case 3:
-            return (T)new Tuple3(data[0], data[1], data[2]);
-         case 4:
-            return (T)new Tuple4(data[0], data[1], data[2], data[3]);
-         case 5:
-            return (T)new Tuple5(data[0], data[1], data[2], data[3], data[4]);
-         case 6:
-            return (T)new Tuple6(data[0], data[1], data[2], data[3], data[4], data[5]);
-         case 7:
-            return (T)new Tuple7(data[0], data[1], data[2], data[3], data[4], data[5], data[6]);
-         case 8:
-            return (T)new Tuple8(data[0], data[1], data[2], data[3], data[4], data[5], data[6], data[7]);
-         default:
-            throw new IllegalArgumentException("Creating a tuple with a SQLReader with unknown size " + subreaders.length);
-      }
-   }
-
 /*
       public String getTupleInternalName()
       {
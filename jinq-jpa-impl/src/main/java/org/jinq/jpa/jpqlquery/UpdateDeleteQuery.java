@@ -0,0 +1,153 @@
+package org.jinq.jpa.jpqlquery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bulk UPDATE or DELETE statement that changes all the entities
+ * returned by a simple query over a single entity. The statement is
+ * built from the FROM and WHERE parts of the query, so the entities
+ * never need to be loaded. If no fields are set, then a DELETE
+ * statement is generated.
+ */
+public class UpdateDeleteQuery<T> extends SelectFromWhere<T>
+{
+   /**
+    * The fields being set by an UPDATE and the new values for them
+    */
+   public List<Expression> setFields = new ArrayList<>();
+   public List<Expression> setValues = new ArrayList<>();
+
+   /**
+    * Bulk updates and deletes can only be made on queries that return
+    * all the entities of a single entity type that match some conditions.
+    */
+   public static boolean canUpdateDelete(JPQLQuery<?> query)
+   {
+      if (query.getClass() != SelectFromWhere.class) return false;
+      SelectFromWhere<?> sfw = (SelectFromWhere<?>)query;
+      return !sfw.isAggregated && !sfw.isDistinct
+            && sfw.limit < 0 && sfw.skip < 0
+            && sfw.froms.size() == 1
+            && sfw.froms.get(0).getClass() == From.FromEntity.class
+            && sfw.cols.isSingleColumn()
+            && sfw.cols.getOnlyColumn().equals(new FromAliasExpression(sfw.froms.get(0)));
+   }
+
+   /**
+    * Creates a DELETE statement for the entities returned by a query. Use
+    * canUpdateDelete() first to check if the query is suitable.
+    */
+   public static <U> UpdateDeleteQuery<U> fromQuery(SelectFromWhere<U> query)
+   {
+      UpdateDeleteQuery<U> updateDelete = new UpdateDeleteQuery<>();
+      query.copySelectFromWhereTo(updateDelete);
+      // The order of the entities doesn't matter when changing them
+      updateDelete.sort.clear();
+      return updateDelete;
+   }
+
+   /**
+    * @return the name of the entity being updated or deleted
+    */
+   public String getEntityName()
+   {
+      return ((From.FromEntity)froms.get(0)).entityName;
+   }
+
+   /**
+    * @return true if a field of the entity is a direct field of the entity
+    *    that can be set by an UPDATE statement
+    */
+   public boolean isSettableField(Expression field)
+   {
+      return field instanceof ReadFieldExpression
+            && ((ReadFieldExpression)field).base.equals(new FromAliasExpression(froms.get(0)));
+   }
+
+   public boolean isDelete()
+   {
+      return setFields.isEmpty();
+   }
+
+   @Override
+   protected void prepareQueryGeneration(Expression.QueryGenerationPreparationPhase preparePhase,
+         QueryGenerationState queryState)
+   {
+      super.prepareQueryGeneration(preparePhase, queryState);
+      for (Expression field: setFields)
+         field.prepareQueryGeneration(preparePhase, queryState);
+      for (Expression value: setValues)
+         value.prepareQueryGeneration(preparePhase, queryState);
+   }
+
+   @Override
+   protected String generateQueryContents(QueryGenerationState queryState)
+   {
+      From from = froms.get(0);
+      queryState.queryString += isDelete() ? "DELETE FROM " : "UPDATE ";
+      from.generateFromString(queryState, queryState.getFromAlias(from), true);
+      if (!isDelete())
+      {
+         queryState.queryString += " SET ";
+         for (int n = 0; n < setFields.size(); n++)
+         {
+            if (n > 0) queryState.queryString += ", ";
+            setFields.get(n).generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
+            queryState.queryString += " = ";
+            setValues.get(n).generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
+         }
+      }
+      if (where != null)
+      {
+         queryState.queryString += " WHERE ";
+         where.generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
+      }
+      return queryState.queryString;
+   }
+
+   @Override public boolean isSelectFromWhere()
+   {
+      return false;
+   }
+
+   @Override public boolean canSelectWhere()
+   {
+      return false;
+   }
+
+   @Override public boolean canSort()
+   {
+      return false;
+   }
+
+   @Override public boolean canDistinct()
+   {
+      return false;
+   }
+
+   @Override public boolean canAggregate()
+   {
+      return false;
+   }
+
+   @Override public boolean canUnsortAggregate()
+   {
+      return false;
+   }
+
+   @Override public boolean isValidSubquery()
+   {
+      return false;
+   }
+
+   @Override
+   public UpdateDeleteQuery<T> shallowCopy()
+   {
+      UpdateDeleteQuery<T> copy = new UpdateDeleteQuery<>();
+      copySelectFromWhereTo(copy);
+      copy.setFields.addAll(setFields);
+      copy.setValues.addAll(setValues);
+      return copy;
+   }
+}
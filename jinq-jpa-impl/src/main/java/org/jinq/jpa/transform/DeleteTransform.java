@@ -0,0 +1,31 @@
+package org.jinq.jpa.transform;
+
+import org.jinq.jpa.jpqlquery.JPQLQuery;
+import org.jinq.jpa.jpqlquery.SelectFromWhere;
+import org.jinq.jpa.jpqlquery.UpdateDeleteQuery;
+
+/**
+ * Turns a query over a single entity into a bulk DELETE of the entities
+ * returned by the query. 
+ */
+public class DeleteTransform extends JPQLNoLambdaQueryTransform
+{
+   public DeleteTransform(JPQLQueryTransformConfiguration config)
+   {
+      super(config);
+   }
+   
+   @Override
+   public <U, V> JPQLQuery<U> apply(JPQLQuery<V> query, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException
+   {
+      if (UpdateDeleteQuery.canUpdateDelete(query))
+         return (JPQLQuery<U>)UpdateDeleteQuery.fromQuery((SelectFromWhere<V>)query);
+      throw new QueryTransformException("Only queries over a single entity can be used to delete entities");
+   }
+
+   @Override 
+   public String getTransformationTypeCachingTag()
+   {
+      return DeleteTransform.class.getName();
+   }
+}
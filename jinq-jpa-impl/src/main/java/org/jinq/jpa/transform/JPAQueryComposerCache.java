@@ -1,15 +1,46 @@
 package org.jinq.jpa.transform;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
 
 import org.jinq.jpa.jpqlquery.JPQLQuery;
 
 /**
  * Used to cache query transformations so that we don't have to repeat the work
  * of applying transformations if we've applied the same transformation before.
+ * The cache can be safely shared by many threads. Lookups do not lock, and
+ * the number of cached transforms is bounded, with the least recently used
+ * transforms being evicted first.
+ * 
+ * A snapshot of the cache can be exported when an application shuts down
+ * and imported when it starts up again so that the queries it used before
+ * do not have to be translated again.
  */
 public class JPAQueryComposerCache
 {
@@ -70,17 +101,423 @@ public class JPAQueryComposerCache
       String[] lambdaSources;
    }
 
+   /**
+    * Holds a cached transform along with a timestamp of when it was last
+    * used so that the least recently used entries can be evicted when the
+    * cache grows too large. The timestamp is updated without any 
+    * synchronization, so the LRU ordering is only approximate.
+    */
+   private static class CacheEntry
+   {
+      CacheEntry(Optional<JPQLQuery<?>> query)
+      {
+         this.query = query;
+         this.lastAccess = System.nanoTime();
+      }
+      final Optional<JPQLQuery<?>> query;
+      volatile long lastAccess;
+   }
+   
+   /**
+    * The last access time of a cache entry at the moment the entries
+    * were gathered for eviction. Entries are sorted using these copies 
+    * because the access times of the live entries can change during the 
+    * sort.
+    */
+   private static class EvictionCandidate
+   {
+      EvictionCandidate(CacheKey key, CacheEntry entry)
+      {
+         this.key = key;
+         this.entry = entry;
+         this.lastAccess = entry.lastAccess;
+      }
+      final CacheKey key;
+      final CacheEntry entry;
+      final long lastAccess;
+   }
+
+   /**
+    * A cached query transform or find all entities query in the form in 
+    * which it is written to a snapshot of the cache. All the entries of a 
+    * snapshot are written to the same object stream so that queries shared 
+    * by different entries are still shared when the snapshot is imported.
+    */
+   private static class SnapshotEntry implements Serializable
+   {
+      /**
+       * Name of the entity returned by a find all entities query, or null
+       * if the entry is for a query transform
+       */
+      String entityName;
+      String transformationType;
+      JPQLQuery<?> baseQuery1;
+      JPQLQuery<?> baseQuery2;
+      String[] lambdaSources;
+      /**
+       * Result of the transform or null if the transform could not be 
+       * applied
+       */
+      JPQLQuery<?> query;
+      /**
+       * Maps the names of the classes holding the code of the lambdas to
+       * hashes of their class files
+       */
+      Map<String, String> lambdaClassHashes;
+   }
+
+   /**
+    * Reads snapshots of the cache. Only the classes that make up 
+    * the entries of a snapshot are allowed to be deserialized.
+    */
+   private static class SnapshotInputStream extends ObjectInputStream
+   {
+      SnapshotInputStream(InputStream in) throws IOException
+      {
+         super(in);
+      }
+
+      @Override
+      protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+      {
+         String name = desc.getName();
+         String elementName = name.replaceFirst("^\\[+L?", "").replace(";", "");
+         if (!elementName.startsWith("org.jinq.jpa.jpqlquery.")
+               && !elementName.equals(SnapshotEntry.class.getName())
+               && !(name.startsWith("[") && elementName.length() == 1)
+               && !SNAPSHOT_JAVA_CLASSES.contains(elementName))
+            throw new InvalidClassException(name, "Unexpected class in a snapshot of the query cache");
+         return super.resolveClass(desc);
+      }
+   }
+
+   private static final String SNAPSHOT_HEADER = "JinqQueryCache";
+   private static final List<String> SNAPSHOT_JAVA_CLASSES = Arrays.asList(
+         "java.lang.String", "java.lang.Number", "java.lang.Integer", 
+         "java.lang.Boolean", "java.lang.Enum", "java.util.ArrayList", 
+         "java.util.HashMap");
+
+   /**
+    * Default maximum number of query transforms that are cached.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 10000;
+
    /**
     * Map of cached query transforms. Maps from a description of the transform
-    * to the cached result of the transform.
+    * to the cached result of the transform. Lookups do not take any locks.
     */
-   Map<CacheKey, Optional<JPQLQuery<?>>> cachedQueryTransforms = new HashMap<>();
+   ConcurrentMap<CacheKey, CacheEntry> cachedQueryTransforms = new ConcurrentHashMap<>();
 
    /**
     * Map of cached queries for finding all the entities of a certain type. The
-    * map maps from entity name to the corresponding query.
+    * map maps from entity name to the corresponding query. The number of 
+    * entity types is fixed, so this map does not need to be bounded.
+    */
+   ConcurrentMap<String, Optional<JPQLQuery<?>>> cachedFindAllEntities = new ConcurrentHashMap<>();
+
+   /**
+    * Only one thread at a time should evict entries. Other threads that
+    * insert entries while an eviction is in progress simply skip eviction.
+    */
+   private final ReentrantLock evictionLock = new ReentrantLock();
+   
+   private volatile int maxEntries;
+   
+   private final LongAdder hitCount = new LongAdder();
+   private final LongAdder missCount = new LongAdder();
+   private final LongAdder evictionCount = new LongAdder();
+
+   public JPAQueryComposerCache()
+   {
+      this(DEFAULT_MAX_ENTRIES);
+   }
+   
+   /**
+    * @param maxEntries maximum number of query transforms to hold in the 
+    *    cache, or a value less than or equal to zero for an unbounded cache
+    */
+   public JPAQueryComposerCache(int maxEntries)
+   {
+      this.maxEntries = maxEntries;
+   }
+   
+   /**
+    * Changes the maximum number of query transforms held in the cache. If
+    * the cache currently holds more entries, the least recently used ones
+    * are evicted.
+    * @param maxEntries maximum number of query transforms to hold in the 
+    *    cache, or a value less than or equal to zero for an unbounded cache
+    */
+   public void setMaxEntries(int maxEntries)
+   {
+      this.maxEntries = maxEntries;
+      evictIfNeeded();
+   }
+   
+   public int getMaxEntries()
+   {
+      return maxEntries;
+   }
+   
+   /**
+    * @return number of query transforms currently held in the cache
+    */
+   public int size()
+   {
+      return cachedQueryTransforms.size();
+   }
+   
+   /**
+    * @return number of lookups of query transforms that found a cached entry
+    */
+   public long getHitCount()
+   {
+      return hitCount.sum();
+   }
+   
+   /**
+    * @return number of lookups of query transforms that did not find a 
+    *    cached entry
+    */
+   public long getMissCount()
+   {
+      return missCount.sum();
+   }
+   
+   /**
+    * @return number of query transforms that were removed from the cache 
+    *    to keep it within its maximum size
+    */
+   public long getEvictionCount()
+   {
+      return evictionCount.sum();
+   }
+   
+   /**
+    * Removes all the cached queries.
+    */
+   public void clear()
+   {
+      cachedQueryTransforms.clear();
+      cachedFindAllEntities.clear();
+   }
+
+   /**
+    * Writes a snapshot of the cached queries to a stream so that it can be 
+    * imported into the cache of another run of the application. Queries 
+    * that use custom tuples and queries using lambdas whose class files 
+    * cannot be found are not included in the snapshot.
+    * @param out stream to write the snapshot to
+    * @param metamodel metamodel of the entities used by the cached queries.
+    *    The snapshot can only be imported if the entities don't change.
+    * @param alternateClassLoader class loader used to find the class files
+    *    of lambdas if the lambdas can't be found by the class loader of Jinq
+    * @return the number of entries written to the snapshot
+    */
+   public int exportSnapshot(OutputStream out, Metamodel metamodel, ClassLoader alternateClassLoader) throws IOException
+   {
+      ObjectOutputStream objOut = new ObjectOutputStream(out);
+      objOut.writeUTF(SNAPSHOT_HEADER);
+      objOut.writeUTF(entityFingerprint(metamodel));
+      int count = 0;
+      for (Map.Entry<String, Optional<JPQLQuery<?>>> cached: cachedFindAllEntities.entrySet())
+      {
+         if (!cached.getValue().isPresent()) continue;
+         SnapshotEntry entry = new SnapshotEntry();
+         entry.entityName = cached.getKey();
+         entry.query = cached.getValue().get();
+         if (writeSnapshotEntry(objOut, entry))
+            count++;
+      }
+      Map<String, String> classHashes = new HashMap<>();
+      for (Map.Entry<CacheKey, CacheEntry> cached: cachedQueryTransforms.entrySet())
+      {
+         CacheKey key = cached.getKey();
+         SnapshotEntry entry = new SnapshotEntry();
+         entry.transformationType = key.transformationType;
+         entry.baseQuery1 = key.baseQuery1;
+         entry.baseQuery2 = key.baseQuery2;
+         entry.lambdaSources = key.lambdaSources;
+         entry.query = cached.getValue().query.orElse(null);
+         entry.lambdaClassHashes = new HashMap<>();
+         boolean hasAllClasses = true;
+         if (key.lambdaSources != null)
+         {
+            for (String lambdaSource: key.lambdaSources)
+            {
+               String className = lambdaClassName(lambdaSource);
+               String hash = classHashes.computeIfAbsent(className, name -> hashClassFile(name, alternateClassLoader));
+               if (hash == null)
+                  hasAllClasses = false;
+               entry.lambdaClassHashes.put(className, hash);
+            }
+         }
+         if (hasAllClasses && writeSnapshotEntry(objOut, entry))
+            count++;
+      }
+      objOut.writeObject(null);
+      objOut.flush();
+      return count;
+   }
+
+   private static boolean writeSnapshotEntry(ObjectOutputStream out, SnapshotEntry entry) throws IOException
+   {
+      // Check that the whole entry can be serialized before writing it
+      // because a failed write leaves the snapshot unreadable
+      try {
+         new ObjectOutputStream(new OutputStream() {
+            @Override public void write(int b) {}
+            @Override public void write(byte[] b, int off, int len) {}
+         }).writeObject(entry);
+      }
+      catch (NotSerializableException e)
+      {
+         return false;
+      }
+      out.writeObject(entry);
+      return true;
+   }
+
+   /**
+    * Adds the queries in a snapshot written by exportSnapshot() to the 
+    * cache. The snapshot should be imported before any queries are run 
+    * because imported transforms are only used with queries that come 
+    * from the snapshot too. Transforms using lambdas whose code has 
+    * changed since the snapshot was written are not imported. Nothing is
+    * imported if the entities have changed or if the snapshot was written
+    * by a different version of Jinq.
+    * 
+    * Snapshots are deserialized, so they should only be read from trusted
+    * sources.
+    * @param in stream to read the snapshot from
+    * @param metamodel metamodel of the entities used by the queries 
+    * @param alternateClassLoader class loader used to find the class files
+    *    of lambdas if the lambdas can't be found by the class loader of Jinq
+    * @return the number of entries imported into the cache
+    */
+   public int importSnapshot(InputStream in, Metamodel metamodel, ClassLoader alternateClassLoader) throws IOException
+   {
+      ObjectInputStream objIn = new SnapshotInputStream(in);
+      if (!SNAPSHOT_HEADER.equals(objIn.readUTF()))
+         throw new StreamCorruptedException("Not a snapshot of the query cache");
+      if (!entityFingerprint(metamodel).equals(objIn.readUTF()))
+         return 0;
+      Map<String, String> classHashes = new HashMap<>();
+      int count = 0;
+      try {
+         while (true)
+         {
+            Object obj = objIn.readObject();
+            if (obj == null) break;
+            if (!(obj instanceof SnapshotEntry))
+               throw new StreamCorruptedException("Unexpected entry in a snapshot of the query cache");
+            SnapshotEntry entry = (SnapshotEntry)obj;
+            if (entry.entityName != null)
+            {
+               if (cachedFindAllEntities.putIfAbsent(entry.entityName, Optional.of(entry.query)) == null)
+                  count++;
+               continue;
+            }
+            boolean isLambdaCodeUnchanged = true;
+            for (Map.Entry<String, String> classHash: entry.lambdaClassHashes.entrySet())
+            {
+               String hash = classHashes.computeIfAbsent(classHash.getKey(), name -> hashClassFile(name, alternateClassLoader));
+               if (!classHash.getValue().equals(hash))
+                  isLambdaCodeUnchanged = false;
+            }
+            if (!isLambdaCodeUnchanged) continue;
+            CacheKey key = new CacheKey();
+            key.transformationType = entry.transformationType;
+            key.baseQuery1 = entry.baseQuery1;
+            key.baseQuery2 = entry.baseQuery2;
+            key.lambdaSources = entry.lambdaSources;
+            if (cachedQueryTransforms.putIfAbsent(key, new CacheEntry(Optional.ofNullable(entry.query))) == null)
+               count++;
+         }
+      }
+      catch (InvalidClassException | ClassNotFoundException e)
+      {
+         // The snapshot was written by a different version of Jinq. Entries
+         // that were read before the problem was found can still be used.
+      }
+      evictIfNeeded();
+      return count;
+   }
+
+   /**
+    * @return the name of the class holding the code of a lambda described
+    *    in the format of LambdaInfo.getLambdaSourceString()
     */
-   Map<String, Optional<JPQLQuery<?>>> cachedFindAllEntities = new HashMap<>();
+   private static String lambdaClassName(String lambdaSource)
+   {
+      return lambdaSource.substring(0, lambdaSource.indexOf('#'));
+   }
+
+   /**
+    * @return a hash of the class file of a class, or null if the class 
+    *    file cannot be found 
+    */
+   static String hashClassFile(String className, ClassLoader alternateClassLoader)
+   {
+      // Look for the class file in the same places that the lambda 
+      // analysis looks for it
+      String classFileName = className.replace(".", "/") + ".class";
+      try (InputStream classStream = openResource(classFileName, alternateClassLoader)) {
+         if (classStream == null) return null;
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         byte[] buffer = new byte[8192];
+         for (int n = classStream.read(buffer); n >= 0; n = classStream.read(buffer))
+            digest.update(buffer, 0, n);
+         return toHex(digest.digest());
+      }
+      catch (IOException | NoSuchAlgorithmException e)
+      {
+         return null;
+      }
+   }
+
+   private static InputStream openResource(String name, ClassLoader alternateClassLoader)
+   {
+      InputStream stream = ClassLoader.getSystemResourceAsStream(name);
+      ClassLoader ownClassLoader = JPAQueryComposerCache.class.getClassLoader();
+      if (stream == null && ownClassLoader != null)
+         stream = ownClassLoader.getResourceAsStream(name);
+      if (stream == null && alternateClassLoader != null)
+         stream = alternateClassLoader.getResourceAsStream(name);
+      return stream;
+   }
+
+   /**
+    * @return a hash of the names and class files of the entities and other
+    *    managed types of a metamodel 
+    */
+   private static String entityFingerprint(Metamodel metamodel) throws IOException
+   {
+      Map<String, String> classHashes = new TreeMap<>();
+      for (ManagedType<?> type: metamodel.getManagedTypes())
+      {
+         // Envers can insert entities with null Java types into the metamodel
+         Class<?> javaType = type.getJavaType();
+         if (javaType == null) continue;
+         classHashes.put(javaType.getName(), hashClassFile(javaType.getName(), javaType.getClassLoader()));
+      }
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         return toHex(digest.digest(classHashes.toString().getBytes(StandardCharsets.UTF_8)));
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IOException(e);
+      }
+   }
+
+   private static String toHex(byte[] bytes)
+   {
+      StringBuilder hex = new StringBuilder();
+      for (byte b: bytes)
+         hex.append(String.format("%02x", b));
+      return hex.toString();
+   }
 
    /**
     * Looks up whether a certain transformation is already in the cache or not.
@@ -93,7 +530,7 @@ public class JPAQueryComposerCache
     * @return cached transformation result or null if this transformation hasn't
     *         been cached
     */
-   public synchronized Optional<JPQLQuery<?>> findInCache(JPQLQuery<?> base,
+   public Optional<JPQLQuery<?>> findInCache(JPQLQuery<?> base,
          String transformationType, String[] lambdaSources)
    {
       return cacheQuery(base, transformationType, lambdaSources, null);
@@ -112,7 +549,7 @@ public class JPAQueryComposerCache
     * @return cached transformation result or null if this transformation hasn't
     *         been cached
     */
-   public synchronized Optional<JPQLQuery<?>> findInCache(JPQLQuery<?> base1, JPQLQuery<?> base2,
+   public Optional<JPQLQuery<?>> findInCache(JPQLQuery<?> base1, JPQLQuery<?> base2,
          String transformationType, String[] lambdaSources)
    {
       return cacheQuery(base1, base2, transformationType, lambdaSources, null);
@@ -127,7 +564,7 @@ public class JPAQueryComposerCache
     * @param resultingQuery result of the transformation that should be cached
     * @return the existing cached entry or resultingQuery if nothing is cached
     */
-   public synchronized Optional<JPQLQuery<?>> cacheQuery(JPQLQuery<?> base,
+   public Optional<JPQLQuery<?>> cacheQuery(JPQLQuery<?> base,
          String transformationType, String[] lambdaSources, Optional<JPQLQuery<?>> resultingQuery)
    {
       return cacheQuery(base, null, transformationType, lambdaSources, resultingQuery);
@@ -143,7 +580,7 @@ public class JPAQueryComposerCache
     * @param resultingQuery result of the transformation that should be cached
     * @return the existing cached entry or resultingQuery if nothing is cached
     */
-   public synchronized Optional<JPQLQuery<?>> cacheQuery(JPQLQuery<?> base1, JPQLQuery<?> base2,
+   public Optional<JPQLQuery<?>> cacheQuery(JPQLQuery<?> base1, JPQLQuery<?> base2,
          String transformationType, String[] lambdaSources, Optional<JPQLQuery<?>> resultingQuery)
    {
       CacheKey key = new CacheKey();
@@ -152,12 +589,60 @@ public class JPAQueryComposerCache
       key.baseQuery2 = base2;
       if (lambdaSources != null)
          key.lambdaSources = Arrays.copyOf(lambdaSources, lambdaSources.length);
-      if (cachedQueryTransforms.containsKey(key))
-         return cachedQueryTransforms.get(key);
-      if (resultingQuery != null)
-         cachedQueryTransforms.put(key, resultingQuery);
+      if (resultingQuery == null)
+      {
+         // Just a lookup
+         CacheEntry entry = cachedQueryTransforms.get(key);
+         if (entry == null)
+         {
+            missCount.increment();
+            return null;
+         }
+         hitCount.increment();
+         entry.lastAccess = System.nanoTime();
+         return entry.query;
+      }
+      CacheEntry existing = cachedQueryTransforms.putIfAbsent(key, new CacheEntry(resultingQuery));
+      if (existing != null)
+      {
+         existing.lastAccess = System.nanoTime();
+         return existing.query;
+      }
+      evictIfNeeded();
       return resultingQuery;
    }
+   
+   /**
+    * Removes the least recently used entries if the cache holds more than 
+    * the maximum number of entries. To avoid having to sort the entries on
+    * every insertion, an extra tenth of the entries are removed each time.
+    */
+   private void evictIfNeeded()
+   {
+      int max = maxEntries;
+      if (max <= 0 || cachedQueryTransforms.size() <= max) return;
+      if (!evictionLock.tryLock()) return;
+      try {
+         int target = max - max / 10;
+         List<EvictionCandidate> entries = new ArrayList<>();
+         for (Map.Entry<CacheKey, CacheEntry> entry: cachedQueryTransforms.entrySet())
+            entries.add(new EvictionCandidate(entry.getKey(), entry.getValue()));
+         int toRemove = entries.size() - target;
+         if (toRemove <= 0) return;
+         Collections.sort(entries, 
+               (a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+         for (int n = 0; n < toRemove; n++)
+         {
+            EvictionCandidate entry = entries.get(n);
+            if (cachedQueryTransforms.remove(entry.key, entry.entry))
+               evictionCount.increment();
+         }
+      }
+      finally
+      {
+         evictionLock.unlock();
+      }
+   }
 
    /**
     * Checks if a query for finding all the entities of a certain type has
@@ -167,7 +652,7 @@ public class JPAQueryComposerCache
     *           name of the type of entity the query should return
     * @return the cached query or null if no query has been cached.
     */
-   public synchronized Optional<JPQLQuery<?>> findCachedFindAllEntities(
+   public Optional<JPQLQuery<?>> findCachedFindAllEntities(
          String entityName)
    {
       return cacheFindAllEntities(entityName, null);
@@ -186,13 +671,14 @@ public class JPAQueryComposerCache
     * @return if a query has already been cached, that query is returned;
     *         otherwise, queryToCache is inserted into the cache and returned.
     */
-   public synchronized Optional<JPQLQuery<?>> cacheFindAllEntities(
+   public Optional<JPQLQuery<?>> cacheFindAllEntities(
          String entityName, Optional<JPQLQuery<?>> queryToCache)
    {
-      if (cachedFindAllEntities.containsKey(entityName))
+      if (queryToCache == null)
          return cachedFindAllEntities.get(entityName);
-      if (queryToCache != null)
-         cachedFindAllEntities.put(entityName, queryToCache);
+      Optional<JPQLQuery<?>> existing = cachedFindAllEntities.putIfAbsent(entityName, queryToCache);
+      if (existing != null)
+         return existing;
       return queryToCache;
    }
 }
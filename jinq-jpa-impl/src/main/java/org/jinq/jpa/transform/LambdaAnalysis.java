@@ -177,10 +177,6 @@ public class LambdaAnalysis
          return null;
       }
       
-      // TODO: The part below will need to be moved to a separate method.
-      //   That way, we can used the serialized lambda info to check if
-      //   we've cached the results of this analysis already without needing
-      //   to redo all this analysis.
       SerializedLambda s = lambdaInfo.serializedLambda;
       try {
          if (s == null) return null;
@@ -199,6 +195,36 @@ public class LambdaAnalysis
       }
    }
    
+   /**
+    * Analyzes a lambda while treating calls to methods that can't be used
+    * in queries as calls to methods without side-effects. The resulting 
+    * analysis can't be fully translated into a query, but the conditions
+    * in it that don't use those methods can still be used to filter the 
+    * data in the database before the lambda itself is run on the results.
+    * @return the analysis of the lambda or null if it could not be analyzed
+    */
+   public static LambdaAnalysis partiallyAnalyzeLambda(LambdaInfo lambdaInfo, MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe)
+   {
+      SerializedLambda s = lambdaInfo.serializedLambda;
+      if (!lambdaInfo.isInvokeStatic() || s == null) return null;
+      try {
+         // The analysis isn't put in the lambda analysis cache because it
+         // differs from the normal analysis of the lambda
+         PathAnalysisFactory pathAnalysisFactory = new PathAnalysisFactory(
+               new PartialAnalysisMethodChecker(metamodel.getMethodChecker(isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe)));
+         TransformationClassAnalyzer classAnalyzer = 
+               new TransformationClassAnalyzer(s.implClass, alternateClassLoader);
+         MethodAnalysisResults analysis = classAnalyzer.analyzeLambdaMethod(s.implMethodName, s.implMethodSignature, pathAnalysisFactory);
+         if (analysis == null) return null;
+         PathAnalysisSimplifier.cleanAndSimplify(analysis, metamodel.getComparisonMethods(isObjectEqualsSafe), metamodel.getComparisonStaticMethods(isObjectEqualsSafe), isAllEqualsSafe);
+         return new LambdaAnalysis(lambdaInfo.Lambda, s, analysis, lambdaInfo.lambdaIndex);
+      }
+      catch (Exception e)
+      {
+         return null;
+      }
+   }
+   
    /**
     * Oracle's JDK8 encodes method references directly as an "invoke virtual" lambda.
     * (Eclipse seems to encode method references like a normal method). So here we
@@ -282,10 +308,6 @@ public class LambdaAnalysis
          return null;
       }
       
-      // TODO: The part below will need to be moved to a separate method.
-      //   That way, we can used the serialized lambda info to check if
-      //   we've cached the results of this analysis already without needing
-      //   to redo all this analysis.
       try {
          MethodAnalysisResults analysis = analyzeLambda(metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, lambdaHandle.getOwner(), lambdaHandle.getName(), lambdaHandle.getDesc());
          if (analysis == null) 
@@ -308,8 +330,42 @@ public class LambdaAnalysis
       }
    }
 
+   /**
+    * Analyzes the code of a lambda method ahead of time so that the analysis
+    * is already cached when the lambda is first used in a query.
+    * @param lambdaSource description of the lambda method in the format 
+    *    used by LambdaInfo.getLambdaSourceString()
+    * @return true if the lambda could be analyzed
+    */
+   public static boolean preanalyzeLambda(MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe, String lambdaSource)
+   {
+      int methodStart = lambdaSource.indexOf('#');
+      int signatureStart = lambdaSource.indexOf('(', methodStart + 1);
+      if (methodStart < 0 || signatureStart < 0) return false;
+      try {
+         return null != analyzeLambda(metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, 
+               lambdaSource.substring(0, methodStart), 
+               lambdaSource.substring(methodStart + 1, signatureStart), 
+               lambdaSource.substring(signatureStart));
+      }
+      catch (Exception e)
+      {
+         // Lambdas that can't be analyzed will fail again when they are
+         // used in a query, so the error can be reported then
+         return false;
+      }
+   }
+
    private static MethodAnalysisResults analyzeLambda(MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe, String className, String methodName, String methodSignature) throws IOException, AnalyzerException 
    {
+      // The same lambda is often used with many different base queries, so
+      // check if its code has already been analyzed
+      LambdaAnalysisCache cache = metamodel.getLambdaAnalysisCache();
+      String lambdaSource = LambdaAnalysisCache.lambdaSourceString(className, methodName, methodSignature);
+      MethodAnalysisResults cachedAnalysis = cache.findInCache(lambdaSource, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe);
+      if (cachedAnalysis != null)
+         return cachedAnalysis;
+      
       // Open up the corresponding class to analyze
       PathAnalysisFactory pathAnalysisFactory = new PathAnalysisFactory(
             metamodel.getMethodChecker(isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe));
@@ -317,7 +373,7 @@ public class LambdaAnalysis
             new TransformationClassAnalyzer(className, alternateClassLoader);
       MethodAnalysisResults analysis = classAnalyzer.analyzeLambdaMethod(methodName, methodSignature, pathAnalysisFactory);
       PathAnalysisSimplifier.cleanAndSimplify(analysis, metamodel.getComparisonMethods(isObjectEqualsSafe), metamodel.getComparisonStaticMethods(isObjectEqualsSafe), isAllEqualsSafe);
-      return analysis;
+      return cache.cacheAnalysis(lambdaSource, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, analysis);
    }
 
    private static MethodAnalysisResults analyzeLambdaClass(Class<?> lambdaClass, MetamodelUtil metamodel, LambdaAsClassAnalysisConfig lambdaAsClass, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe) throws IOException, AnalyzerException 
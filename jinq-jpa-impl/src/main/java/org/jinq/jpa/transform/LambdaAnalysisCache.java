@@ -0,0 +1,115 @@
+package org.jinq.jpa.transform;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ch.epfl.labos.iu.orm.queryll2.path.MethodAnalysisResults;
+
+/**
+ * Caches the results of symbolically executing the code of a lambda so
+ * that a lambda that is used in many different queries only needs to be
+ * analyzed once. The analysis depends on which methods the metamodel
+ * considers safe, so each MetamodelUtil holds its own cache.
+ *
+ * The number of entries is bounded by the number of lambdas in the
+ * program's code, so no entries are ever evicted.
+ */
+public class LambdaAnalysisCache
+{
+   /**
+    * Internal key used to represent the analysis of a lambda method.
+    */
+   private static class CacheKey
+   {
+      CacheKey(String lambdaSource, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe)
+      {
+         this.lambdaSource = lambdaSource;
+         this.isObjectEqualsSafe = isObjectEqualsSafe;
+         this.isAllEqualsSafe = isAllEqualsSafe;
+         this.isCollectionContainsSafe = isCollectionContainsSafe;
+      }
+      @Override
+      public int hashCode()
+      {
+         final int prime = 31;
+         int result = lambdaSource.hashCode();
+         result = prime * result + (isObjectEqualsSafe ? 1231 : 1237);
+         result = prime * result + (isAllEqualsSafe ? 1231 : 1237);
+         result = prime * result + (isCollectionContainsSafe ? 1231 : 1237);
+         return result;
+      }
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (this == obj)
+            return true;
+         if (obj == null)
+            return false;
+         if (getClass() != obj.getClass())
+            return false;
+         CacheKey other = (CacheKey) obj;
+         return lambdaSource.equals(other.lambdaSource)
+               && isObjectEqualsSafe == other.isObjectEqualsSafe
+               && isAllEqualsSafe == other.isAllEqualsSafe
+               && isCollectionContainsSafe == other.isCollectionContainsSafe;
+      }
+      final String lambdaSource;
+      final boolean isObjectEqualsSafe;
+      final boolean isAllEqualsSafe;
+      final boolean isCollectionContainsSafe;
+   }
+
+   private final ConcurrentMap<CacheKey, MethodAnalysisResults> cachedAnalyses = new ConcurrentHashMap<>();
+
+   /**
+    * Returns a description of a lambda method that can be used as a key for the cache.
+    * It has the same format as LambdaInfo.getLambdaSourceString().
+    */
+   public static String lambdaSourceString(String className, String methodName, String methodSignature)
+   {
+      return className + "#" + methodName + methodSignature;
+   }
+
+   /**
+    * Looks up whether the analysis of a lambda method has already been cached.
+    * @param lambdaSource description of the lambda method being analyzed
+    * @return the cached analysis or null if the method hasn't been analyzed yet
+    */
+   public MethodAnalysisResults findInCache(String lambdaSource, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe)
+   {
+      return cachedAnalyses.get(new CacheKey(lambdaSource, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe));
+   }
+
+   /**
+    * Inserts the analysis of a lambda method into the cache. The cached
+    * analysis is shared between queries, so it must not be modified afterwards.
+    * @return the analysis that was already cached for the method or
+    *    analysis if there was no existing entry
+    */
+   public MethodAnalysisResults cacheAnalysis(String lambdaSource, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe, MethodAnalysisResults analysis)
+   {
+      MethodAnalysisResults existing = cachedAnalyses.putIfAbsent(
+            new CacheKey(lambdaSource, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe),
+            analysis);
+      if (existing != null)
+         return existing;
+      return analysis;
+   }
+
+   /**
+    * Removes all cached analyses. This is needed when the set of methods
+    * considered safe for use in queries changes.
+    */
+   public void clear()
+   {
+      cachedAnalyses.clear();
+   }
+
+   /**
+    * @return number of lambda methods whose analysis is currently cached
+    */
+   public int size()
+   {
+      return cachedAnalyses.size();
+   }
+}
@@ -0,0 +1,171 @@
+package org.jinq.jpa.transform;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.jinq.rebased.org.objectweb.asm.ClassReader;
+import org.jinq.rebased.org.objectweb.asm.Handle;
+import org.jinq.rebased.org.objectweb.asm.Opcodes;
+import org.jinq.rebased.org.objectweb.asm.Type;
+import org.jinq.rebased.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
+import org.jinq.rebased.org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.jinq.rebased.org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Builds and reads an index of the lambdas in a program that are used
+ * in Jinq queries. The index is built from the compiled classes of the
+ * program during the build, and it can be read at startup so that the
+ * code of those lambdas can be analyzed before the first queries are run.
+ *
+ * Each line of the index holds the description of a lambda method in the
+ * format used by LambdaInfo.getLambdaSourceString(). Blank lines and
+ * lines starting with # are ignored.
+ *
+ * The index for a directory of compiled classes can be built by running
+ * this class with the classes directory as its argument. It is written to
+ * META-INF/jinq/lambda-index.txt in that directory unless a different
+ * output file is given as a second argument.
+ */
+public class LambdaIndex
+{
+   /**
+    * Name of the resource holding the lambda index
+    */
+   public static final String INDEX_RESOURCE = "META-INF/jinq/lambda-index.txt";
+
+   /**
+    * Lambdas implementing the nested functional interfaces of these types
+    * are the ones passed to the methods of Jinq streams
+    */
+   private static final String[] QUERY_LAMBDA_TYPE_PREFIXES = {
+         "org/jinq/orm/stream/JinqStream$",
+         "org/jinq/jpa/JPAJinqStream$"
+   };
+
+   private static boolean isQueryLambdaType(String internalName)
+   {
+      for (String prefix: QUERY_LAMBDA_TYPE_PREFIXES)
+         if (internalName.startsWith(prefix))
+            return true;
+      return false;
+   }
+
+   /**
+    * Finds the lambdas used with Jinq streams in the code of a class.
+    * @param classFile the contents of a .class file
+    * @param lambdas the descriptions of the lambda methods found are added here
+    */
+   public static void findLambdas(InputStream classFile, Collection<String> lambdas) throws IOException
+   {
+      ClassNode cl = new ClassNode();
+      new ClassReader(classFile).accept(cl, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      for (MethodNode m: cl.methods)
+      {
+         if (m.instructions == null) continue;
+         for (AbstractInsnNode insn = m.instructions.getFirst(); insn != null; insn = insn.getNext())
+         {
+            if (!(insn instanceof InvokeDynamicInsnNode)) continue;
+            InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode)insn;
+            if (!"java/lang/invoke/LambdaMetafactory".equals(indy.bsm.getOwner())) continue;
+            if (indy.bsmArgs.length < 2 || !(indy.bsmArgs[1] instanceof Handle)) continue;
+            if (!isQueryLambdaType(Type.getReturnType(indy.desc).getInternalName())) continue;
+            // Only lambdas that are encoded as static methods have their
+            // analysis cached
+            Handle impl = (Handle)indy.bsmArgs[1];
+            if (impl.getTag() != Opcodes.H_INVOKESTATIC) continue;
+            lambdas.add(LambdaAnalysisCache.lambdaSourceString(impl.getOwner(), impl.getName(), impl.getDesc()));
+         }
+      }
+   }
+
+   /**
+    * Finds the lambdas used with Jinq streams in all the .class files in a
+    * directory and its subdirectories.
+    */
+   public static SortedSet<String> findLambdas(File classesDir) throws IOException
+   {
+      SortedSet<String> lambdas = new TreeSet<>();
+      List<File> toScan = new ArrayList<>();
+      toScan.add(classesDir);
+      while (!toScan.isEmpty())
+      {
+         File f = toScan.remove(toScan.size() - 1);
+         if (f.isDirectory())
+         {
+            File[] children = f.listFiles();
+            if (children == null) continue;
+            for (File child: children)
+               toScan.add(child);
+         }
+         else if (f.getName().endsWith(".class"))
+         {
+            try (InputStream in = new FileInputStream(f))
+            {
+               findLambdas(in, lambdas);
+            }
+         }
+      }
+      return lambdas;
+   }
+
+   public static void writeIndex(Collection<String> lambdas, Writer out) throws IOException
+   {
+      out.write("# Lambdas used in Jinq queries\n");
+      for (String lambda: lambdas)
+      {
+         out.write(lambda);
+         out.write('\n');
+      }
+   }
+
+   public static List<String> readIndex(Reader in) throws IOException
+   {
+      List<String> lambdas = new ArrayList<>();
+      BufferedReader reader = new BufferedReader(in);
+      for (String line = reader.readLine(); line != null; line = reader.readLine())
+      {
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#")) continue;
+         lambdas.add(line);
+      }
+      return lambdas;
+   }
+
+   public static List<String> readIndex(InputStream in) throws IOException
+   {
+      return readIndex(new InputStreamReader(in, StandardCharsets.UTF_8));
+   }
+
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 1 || args.length > 2)
+      {
+         System.err.println("Usage: LambdaIndex classesDirectory [indexFile]");
+         System.exit(1);
+      }
+      File classesDir = new File(args[0]);
+      File indexFile = args.length > 1 ? new File(args[1]) : new File(classesDir, INDEX_RESOURCE);
+      SortedSet<String> lambdas = findLambdas(classesDir);
+      if (indexFile.getParentFile() != null)
+         Files.createDirectories(indexFile.getParentFile().toPath());
+      try (Writer out = new OutputStreamWriter(Files.newOutputStream(indexFile.toPath()), StandardCharsets.UTF_8))
+      {
+         writeIndex(lambdas, out);
+      }
+   }
+}
@@ -116,6 +116,11 @@ public class LambdaInfo
       return LambdaAnalysis.fullyAnalyzeLambda(this, metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, throwExceptionOnFailure);
    }
 
+   public LambdaAnalysis partiallyAnalyze(MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe)
+   {
+      return LambdaAnalysis.partiallyAnalyzeLambda(this, metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe);
+   }
+
    /**
     * @return a string describing the source for the code of the lambda
     */
@@ -5,15 +5,21 @@ import org.jinq.jpa.jpqlquery.SelectFromWhere;
 
 public class LimitSkipTransform extends JPQLNoLambdaQueryTransform
 {
-   public LimitSkipTransform(JPQLQueryTransformConfiguration config, boolean isLimit, long n)
+   /**
+    * @param valueIndex the index of the amount to limit or skip among the 
+    *    limit and skip values that will be supplied when the query is run.
+    *    The amount itself is not part of the query, so the same query
+    *    can be reused for different amounts.
+    */
+   public LimitSkipTransform(JPQLQueryTransformConfiguration config, boolean isLimit, int valueIndex)
    {
       super(config);
-      constraint = n;
+      this.valueIndex = valueIndex;
       this.isLimit = isLimit;
    }
    
    boolean isLimit;
-   long constraint;
+   int valueIndex;
    
    @Override
    public <U, V> JPQLQuery<U> apply(JPQLQuery<V> query, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException
@@ -30,12 +36,12 @@ public class LimitSkipTransform extends JPQLNoLambdaQueryTransform
          
          if (isLimit)
          {
-            toReturn.limit = constraint;
+            toReturn.limit = valueIndex;
          }
          else
          {
-            if (toReturn.limit >= 0) toReturn.limit -= constraint;
-            toReturn.skip = constraint;
+            if (toReturn.limit >= 0) toReturn.isLimitReducedBySkip = true;
+            toReturn.skip = valueIndex;
          }
 
          return toReturn;
@@ -46,6 +52,6 @@ public class LimitSkipTransform extends JPQLNoLambdaQueryTransform
    @Override 
    public String getTransformationTypeCachingTag()
    {
-      return LimitSkipTransform.class.getName() + ":" + isLimit + ":" + constraint;
+      return LimitSkipTransform.class.getName() + ":" + isLimit + ":" + valueIndex;
    }
 }
@@ -49,6 +49,18 @@ public abstract class MetamodelUtil
    protected final Map<MethodSignature, Integer> customTupleAccessorMethods;
    protected final Map<MethodSignature, String> customSqlFunctionMethods;
    
+   /**
+    * Maps entity names to the name of the id field of the entity (only for
+    * entities whose id is made up of a single basic field)
+    */
+   protected final Map<String, String> singleIdFields;
+   
+   /**
+    * Cache of lambda analyses. The analyses depend on which methods are known
+    * to be safe, so the cache must be cleared whenever new methods are registered.
+    */
+   private final LambdaAnalysisCache lambdaAnalysisCache = new LambdaAnalysisCache();
+   
    /**
     * The classes that have been analyzed or are in the process of being analyzed to
     * extract getter method information (this is here to prevent infinite loops in case there
@@ -131,6 +143,7 @@ public abstract class MetamodelUtil
       customTupleConstructorMethods = new HashMap<>();
       customTupleAccessorMethods = new HashMap<>();
       customSqlFunctionMethods = new HashMap<>();
+      singleIdFields = new HashMap<>();
    }
    
    /**
@@ -141,6 +154,7 @@ public abstract class MetamodelUtil
    public void insertConvertedType(String className)
    {
       convertedTypes.add(className);
+      lambdaAnalysisCache.clear();
    }
 
    /**
@@ -154,6 +168,7 @@ public abstract class MetamodelUtil
       MethodSignature sig = MethodSignature.fromMethod(m);
       safeStaticMethods.add(sig);
       customSqlFunctionMethods.put(sig, sqlFunctionName);
+      lambdaAnalysisCache.clear();
    }
    
    /**
@@ -174,6 +189,7 @@ public abstract class MetamodelUtil
       tupleInfo.staticBuilder = builderMethod;
       tupleInfo.staticBuilderSig = builderSig;
       customTupleStaticBuilderMethods.put(builderSig, tupleInfo);
+      lambdaAnalysisCache.clear();
    }
 
    /**
@@ -191,6 +207,7 @@ public abstract class MetamodelUtil
       tupleInfo.constructor = constructor;
       tupleInfo.constructorSig = constructorSig;
       customTupleConstructorMethods.put(constructorSig, tupleInfo);
+      lambdaAnalysisCache.clear();
    }
    
    private void insertCustomTupleIndexGetters(Method...tupleIndexReaders)
@@ -228,6 +245,7 @@ public abstract class MetamodelUtil
       else
          fieldMethods.put(sig, attribute);
       safeMethods.add(sig);
+      lambdaAnalysisCache.clear();
    }
    
    private void insertFieldMethod(String className, String methodName, String altMethodName, String returnType, MetamodelUtilAttribute fieldAttribute)
@@ -461,6 +479,19 @@ public abstract class MetamodelUtil
       return nLinkMethods.containsKey(sig);
    }
    
+   /**
+    * Returns the name of the id field of an entity if the entity has 
+    * a single basic field as its id. Only filled in for JPA metamodels,
+    * since keyset paging is only used by the JPA query composer.
+    * @param entityName name of the entity as used in queries
+    * @return name of the id field or null if the entity's id isn't 
+    *    made up of a single basic field
+    */
+   public String singleIdFieldName(String entityName)
+   {
+      return singleIdFields.get(entityName);
+   }
+   
    /**
     * Given a method used for a 1:N or N:M navigational link, this returns the actual
     * name of the link.
@@ -545,6 +576,11 @@ public abstract class MetamodelUtil
       return safeStaticMethods;
    }
    
+   public LambdaAnalysisCache getLambdaAnalysisCache()
+   {
+      return lambdaAnalysisCache;
+   }
+   
    public MethodChecker getMethodChecker(boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe)
    {
       return new MethodChecker(
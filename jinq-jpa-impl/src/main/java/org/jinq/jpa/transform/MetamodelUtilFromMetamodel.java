@@ -1,7 +1,9 @@
 package org.jinq.jpa.transform;
 
+import jakarta.persistence.metamodel.Attribute;
 import jakarta.persistence.metamodel.EntityType;
 import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
 
 public class MetamodelUtilFromMetamodel extends MetamodelUtil
 {
@@ -28,6 +30,23 @@ public class MetamodelUtilFromMetamodel extends MetamodelUtil
       for (EntityType<?> entity: metamodel.getEntities())
       {
          findMetamodelEntityGetters(entity);
+         findSingleIdField(entity);
+      }
+   }
+   
+   private void findSingleIdField(EntityType<?> entity)
+   {
+      // Envers can insert entities with null Java types into the metamodel
+      if (entity.getJavaType() == null) return;
+      if (!entity.hasSingleIdAttribute()) return;
+      for (SingularAttribute<?, ?> attrib: entity.getSingularAttributes())
+      {
+         if (attrib.isId() && attrib.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC)
+         {
+            String entityName = useHibernateFullEntityNames ? entity.getJavaType().getName() : entity.getName(); 
+            singleIdFields.put(entityName, attrib.getName());
+            return;
+         }
       }
    }
    
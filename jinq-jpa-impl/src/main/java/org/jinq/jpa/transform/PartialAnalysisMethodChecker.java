@@ -0,0 +1,52 @@
+package org.jinq.jpa.transform;
+
+import java.util.List;
+
+import ch.epfl.labos.iu.orm.queryll2.path.PathAnalysisMethodChecker;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter.OperationSideEffect;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+
+/**
+ * Method checker used when partially analyzing a lambda. Calls to methods
+ * that are normally rejected are treated as opaque values instead of
+ * causing the analysis to fail. Those values can't be translated into
+ * a query, so any conditions using them are later left out of the query
+ * and are only checked when the lambda is run on the query results.
+ */
+class PartialAnalysisMethodChecker implements PathAnalysisMethodChecker
+{
+   final PathAnalysisMethodChecker checker;
+
+   PartialAnalysisMethodChecker(PathAnalysisMethodChecker checker)
+   {
+      this.checker = checker;
+   }
+
+   @Override
+   public boolean isFluentChaining(MethodSignature m)
+   {
+      return checker.isFluentChaining(m);
+   }
+
+   @Override
+   public boolean isPutFieldAllowed()
+   {
+      return checker.isPutFieldAllowed();
+   }
+
+   @Override
+   public OperationSideEffect isStaticMethodSafe(MethodSignature m)
+   {
+      OperationSideEffect sideEffect = checker.isStaticMethodSafe(m);
+      return sideEffect == OperationSideEffect.UNSAFE ? OperationSideEffect.NONE : sideEffect;
+   }
+
+   @Override
+   public OperationSideEffect isMethodSafe(MethodSignature m, TypedValue base,
+         List<TypedValue> args)
+   {
+      OperationSideEffect sideEffect = checker.isMethodSafe(m, base, args);
+      return sideEffect == OperationSideEffect.UNSAFE ? OperationSideEffect.NONE : sideEffect;
+   }
+}
@@ -129,6 +129,15 @@ public class SymbExToColumns extends TypedValueVisitor<SymbExPassDown, ColumnExp
       return ColumnExpressions.singleColumn(left.reader,
             UnaryExpression.prefix("NOT", left.getOnlyColumn())); 
    }
+   
+   @Override public ColumnExpressions<?> logicalOpValue(TypedValue.LogicalOpValue val, SymbExPassDown in) throws TypedValueVisitorException
+   {
+      SymbExPassDown passdown = SymbExPassDown.with(val, true);
+      ColumnExpressions<?> left = val.left.visit(this, passdown);
+      ColumnExpressions<?> right = val.right.visit(this, passdown);
+      return ColumnExpressions.singleColumn(left.reader,
+            new BinaryExpression(val.operation, left.getOnlyColumn(), right.getOnlyColumn())); 
+   }
 
    @Override public ColumnExpressions<?> getStaticFieldValue(TypedValue.GetStaticFieldValue val, SymbExPassDown in) throws TypedValueVisitorException
    {
@@ -0,0 +1,63 @@
+package org.jinq.jpa.transform;
+
+import org.jinq.jpa.jpqlquery.ColumnExpressions;
+import org.jinq.jpa.jpqlquery.Expression;
+import org.jinq.jpa.jpqlquery.JPQLQuery;
+import org.jinq.jpa.jpqlquery.SelectFromWhere;
+import org.jinq.jpa.jpqlquery.UpdateDeleteQuery;
+
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValueVisitorException;
+
+/**
+ * Turns a query over a single entity into a bulk UPDATE of the entities
+ * returned by the query. The lambdas come in pairs. The first lambda of 
+ * each pair reads the field to be set from an entity, and the second 
+ * lambda calculates the new value of the field.
+ */
+public class UpdateTransform extends JPQLMultiLambdaQueryTransform
+{
+   public UpdateTransform(JPQLQueryTransformConfiguration config)
+   {
+      super(config);
+   }
+   
+   @Override
+   public <U, V> JPQLQuery<U> apply(JPQLQuery<V> query, LambdaAnalysis[] lambdas, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException
+   {
+      try  {
+         if (UpdateDeleteQuery.canUpdateDelete(query))
+         {
+            SelectFromWhere<V> sfw = (SelectFromWhere<V>)query;
+            UpdateDeleteQuery<V> toReturn = UpdateDeleteQuery.fromQuery(sfw);
+            for (int n = 0; n < lambdas.length; n += 2)
+            {
+               Expression field = translateSingleColumn(sfw, lambdas[n], parentArgumentScope);
+               if (!toReturn.isSettableField(field))
+                  throw new QueryTransformException("Only fields of the entity being updated can be set");
+               toReturn.setFields.add(field);
+               toReturn.setValues.add(translateSingleColumn(sfw, lambdas[n + 1], parentArgumentScope));
+            }
+            return (JPQLQuery<U>)toReturn;
+         }
+         throw new QueryTransformException("Only queries over a single entity can be used to update entities");
+      } catch (TypedValueVisitorException e)
+      {
+         throw new QueryTransformException(e);
+      }
+   }
+
+   private <V> Expression translateSingleColumn(SelectFromWhere<V> sfw, LambdaAnalysis lambda, SymbExArgumentHandler parentArgumentScope) throws TypedValueVisitorException
+   {
+      SymbExToColumns translator = config.newSymbExToColumns(SelectFromWhereLambdaArgumentHandler.fromSelectFromWhere(sfw, lambda, config.metamodel, parentArgumentScope, false));
+      ColumnExpressions<?> cols = makeSelectExpression(translator, lambda);
+      if (!cols.isSingleColumn())
+         throw new TypedValueVisitorException("Expecting a single column when updating a field");
+      return cols.getOnlyColumn();
+   }
+
+   @Override 
+   public String getTransformationTypeCachingTag()
+   {
+      return UpdateTransform.class.getName();
+   }
+}
@@ -20,10 +20,25 @@ import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValueVisitorException;
 public class WhereTransform extends JPQLOneLambdaQueryTransform
 {
    boolean withSource;
+   
+   /**
+    * When true, conditions of the lambda that can't be translated are
+    * left out of the query instead of causing the translation to fail. 
+    * The resulting query returns a superset of the data accepted by
+    * the lambda, so the lambda must still be run on the query results.
+    */
+   boolean isPartial;
+   
    public WhereTransform(JPQLQueryTransformConfiguration config, boolean withSource)
+   {
+      this(config, withSource, false);
+   }
+   
+   public WhereTransform(JPQLQueryTransformConfiguration config, boolean withSource, boolean isPartial)
    {
       super(config);
       this.withSource = withSource;
+      this.isPartial = isPartial;
    }
    
    @Override
@@ -68,12 +83,19 @@ public class WhereTransform extends JPQLOneLambdaQueryTransform
          SelectFromWhere<V> sfw, SymbExArgumentHandler parentArgumentScope) 
                throws TypedValueVisitorException, QueryTransformException
    {
-      return computeWhereReturnExpr(config, where, sfw, SelectFromWhereLambdaArgumentHandler.fromSelectFromWhere(sfw, where, config.metamodel, parentArgumentScope, withSource));
+      return computeWhereReturnExpr(config, where, sfw, SelectFromWhereLambdaArgumentHandler.fromSelectFromWhere(sfw, where, config.metamodel, parentArgumentScope, withSource), isPartial);
    }
 
    public static <V> Expression computeWhereReturnExpr(JPQLQueryTransformConfiguration config, LambdaAnalysis where,
          SelectFromWhere<V> sfw, LambdaParameterArgumentHandler argumentHandler) 
                throws TypedValueVisitorException, QueryTransformException
+   {
+      return computeWhereReturnExpr(config, where, sfw, argumentHandler, false);
+   }
+
+   private static <V> Expression computeWhereReturnExpr(JPQLQueryTransformConfiguration config, LambdaAnalysis where,
+         SelectFromWhere<V> sfw, LambdaParameterArgumentHandler argumentHandler, boolean isPartial) 
+               throws TypedValueVisitorException, QueryTransformException
    {
       // Gather up the conditions for when the path is true (as a disjunction of conjunctive clauses--disjunctive normal form)
       SymbExToColumns translator = config.newSymbExToColumns(argumentHandler);
@@ -123,17 +145,31 @@ public class WhereTransform extends JPQLOneLambdaQueryTransform
          Expression pathExpr = null;
          for (TypedValue clause: conjunction)
          {
-            SymbExPassDown passdown = SymbExPassDown.with(null, true);
-            ColumnExpressions<?> col = clause.visit(translator, passdown);
-            if (!col.isSingleColumn()) 
-               throw new TypedValueVisitorException("Expecting a single column result for path condition");
-            Expression expr = col.getOnlyColumn();
+            Expression expr;
+            try {
+               SymbExPassDown passdown = SymbExPassDown.with(null, true);
+               ColumnExpressions<?> col = clause.visit(translator, passdown);
+               if (!col.isSingleColumn()) 
+                  throw new TypedValueVisitorException("Expecting a single column result for path condition");
+               expr = col.getOnlyColumn();
+            }
+            catch (TypedValueVisitorException e)
+            {
+               if (!isPartial) throw e;
+               // Leaving out a condition only makes the path accept more 
+               // data, and the lambda will filter out that data later
+               continue;
+            }
 
             if (pathExpr == null)
                pathExpr = expr;
             else
                pathExpr = new BinaryExpression("AND", pathExpr, expr);
          }
+         // If none of the conditions of a path could be translated, then the
+         // path might accept anything, so no data can be filtered out 
+         if (isPartial && pathExpr == null)
+            throw new QueryTransformException("Could not translate any conditions of the lambda");
          // Merge into new expression summarizing the method
          if (methodExpr != null)
             methodExpr = new BinaryExpression("OR", methodExpr, pathExpr);
@@ -174,6 +210,8 @@ public class WhereTransform extends JPQLOneLambdaQueryTransform
    @Override 
    public String getTransformationTypeCachingTag()
    {
-      return WhereTransform.class.getName();
+      // Normal wheres keep the same tag so that exported cache snapshots 
+      // stay valid
+      return WhereTransform.class.getName() + (isPartial ? ":partial" : "");
    }
 }
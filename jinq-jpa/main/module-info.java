@@ -3,6 +3,7 @@ module org.jinq.jpa {
    requires org.jinq.analysis;
    requires org.jinq.asmrebased;
    requires transitive org.jinq.api;
+   requires org.reactivestreams;
    requires jakarta.persistence;
    requires java.sql;
    exports org.jinq.jpa;
@@ -0,0 +1,33 @@
+package org.jinq.jpa;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the executor used for running asynchronous queries when the 
+ * caller does not supply one.
+ */
+final class AsyncQueryExecutor
+{
+   private AsyncQueryExecutor() { }
+   
+   /**
+    * Each query run on the executor opens its own EntityManager and 
+    * database connection, so the number of queries run at the same time
+    * is limited to the number of processors. Callers that want more 
+    * queries to run at once should supply their own executor.
+    */
+   static final Executor DEFAULT = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(), 
+         new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+            @Override public Thread newThread(Runnable r)
+            {
+               Thread thread = new Thread(r, "Jinq async query " + count.incrementAndGet());
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+}
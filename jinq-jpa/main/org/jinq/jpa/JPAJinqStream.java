@@ -1,5 +1,14 @@
 package org.jinq.jpa;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import jakarta.persistence.EntityManagerFactory;
+
 import org.jinq.orm.stream.JinqStream;
 import org.jinq.tuples.Pair;
 import org.jinq.tuples.Tuple3;
@@ -8,6 +17,7 @@ import org.jinq.tuples.Tuple5;
 import org.jinq.tuples.Tuple6;
 import org.jinq.tuples.Tuple7;
 import org.jinq.tuples.Tuple8;
+import org.reactivestreams.Publisher;
 
 /**
  * An extension of the JinqStream that includes support for JPQL specific
@@ -111,6 +121,46 @@ public interface JPAJinqStream<T> extends JinqStream<T>
     */
    public JPAJinqStream<T> andNotExcept(JPAJinqStream<T> otherSet);
 
+   /**
+    * Sets a field of all the entities in the stream using a single JPQL 
+    * UPDATE statement instead of loading and changing each entity.
+    * 
+    * <pre>
+    * {@code long updated = stream
+    *    .where(c -> c.getCountry().equals("UK"))
+    *    .updateAll(c -> c.getDebt(), c -> c.getDebt() + 10);
+    * }
+    * </pre>
+    * 
+    * The stream must hold the entities of a single entity type, possibly
+    * filtered with where(), and the field must be a field of those entities.
+    * Like all JPQL bulk updates, the statement goes straight to the database,
+    * so entities already loaded by the EntityManager are not changed. The 
+    * statement must be run inside a transaction.
+    * 
+    * @param field function that reads the field to be set from an entity
+    * @param value function that calculates the new value of the field from
+    *    the entity
+    * @return the number of entities updated
+    */
+   public <U> long updateAll(Select<T, U> field, Select<T, U> value);
+
+   /**
+    * @see #updateAll(Select, Select)
+    */
+   public <U, V> long updateAll(Select<T, U> field1, Select<T, U> value1, 
+         Select<T, V> field2, Select<T, V> value2);
+   
+   /**
+    * Deletes all the entities in the stream using a single JPQL DELETE 
+    * statement instead of loading and removing each entity. The same 
+    * restrictions as {@link #updateAll(Select, Select)} apply. Deletes 
+    * are not cascaded to other entities.
+    * 
+    * @return the number of entities deleted
+    */
+   public long deleteAll();
+
 
    // Variants of the existing JinqStream API that return a JPAJinqStream instead
    // of a JinqStream.
@@ -156,6 +206,10 @@ public interface JPAJinqStream<T> extends JinqStream<T>
          JinqStream.JoinWithSource<T, U> join,
          JinqStream.WhereForOn<T, U> on);
    
+   @Override
+   public <U, K> JPAJinqStream<Pair<T, U>> hashJoin(Collection<U> joined, 
+         Select<T, K> leftKey, Select<U, K> rightKey);
+   
    @Override
    public <U, V> JPAJinqStream<Pair<U, V>> group(Select<T, U> select,
          AggregateGroup<U, T, V> aggregate);
@@ -213,4 +267,155 @@ public interface JPAJinqStream<T> extends JinqStream<T>
    public JPAJinqStream<T> distinct();
    
    public JPAJinqStream<T> setHint(String name, Object value);
+   
+   // Asynchronous execution
+   
+   /**
+    * Runs a terminal operation on the stream in the background so that
+    * several independent queries can be run at the same time. The query 
+    * is run using a new EntityManager created from the given factory, and 
+    * that EntityManager is closed once the terminal operation completes. 
+    * The terminal operation should read all the results that it needs 
+    * before returning, and any entities returned will be detached.
+    * 
+    * <pre>
+    * {@code CompletableFuture<Long> total = 
+    *    stream.executeAsync(s -> s.sumInteger(c -> c.getDebt()), factory, executor);
+    * }
+    * </pre>
+    * 
+    * Streams that could not be translated into a query are read using 
+    * the EntityManager of the original stream. Since an EntityManager 
+    * must not be used by several threads at once, the terminal operation 
+    * for those streams is run immediately on the calling thread, and the 
+    * returned future is already complete.
+    * 
+    * @param terminal terminal operation to apply to the stream
+    * @param factory used to create an EntityManager for running the query
+    * @param executor where the query should be run
+    * @return a future that completes with the result of the terminal operation
+    */
+   public default <U> CompletableFuture<U> executeAsync(Function<? super JPAJinqStream<T>, U> terminal, EntityManagerFactory factory, Executor executor)
+   {
+      CompletableFuture<U> result = new CompletableFuture<>();
+      try {
+         result.complete(terminal.apply(this));
+      }
+      catch (Throwable e)
+      {
+         result.completeExceptionally(e);
+      }
+      return result;
+   }
+
+   /**
+    * Runs a terminal operation on the stream in the background using a 
+    * shared pool of threads.
+    * @see #executeAsync(Function, EntityManagerFactory, Executor)
+    */
+   public default <U> CompletableFuture<U> executeAsync(Function<? super JPAJinqStream<T>, U> terminal, EntityManagerFactory factory)
+   {
+      return executeAsync(terminal, factory, AsyncQueryExecutor.DEFAULT);
+   }
+   
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory, Executor)
+    */
+   public default CompletableFuture<List<T>> toListAsync(EntityManagerFactory factory, Executor executor)
+   {
+      return executeAsync(JinqStream::toList, factory, executor);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory)
+    */
+   public default CompletableFuture<List<T>> toListAsync(EntityManagerFactory factory)
+   {
+      return executeAsync(JinqStream::toList, factory);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory, Executor)
+    */
+   public default CompletableFuture<Long> countAsync(EntityManagerFactory factory, Executor executor)
+   {
+      return executeAsync(JinqStream::count, factory, executor);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory)
+    */
+   public default CompletableFuture<Long> countAsync(EntityManagerFactory factory)
+   {
+      return executeAsync(JinqStream::count, factory);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory, Executor)
+    */
+   public default CompletableFuture<Optional<T>> findOneAsync(EntityManagerFactory factory, Executor executor)
+   {
+      return executeAsync(JinqStream::findOne, factory, executor);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory)
+    */
+   public default CompletableFuture<Optional<T>> findOneAsync(EntityManagerFactory factory)
+   {
+      return executeAsync(JinqStream::findOne, factory);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory, Executor)
+    */
+   public default CompletableFuture<T> getOnlyValueAsync(EntityManagerFactory factory, Executor executor)
+   {
+      return executeAsync(JinqStream::getOnlyValue, factory, executor);
+   }
+
+   /**
+    * @see #executeAsync(Function, EntityManagerFactory)
+    */
+   public default CompletableFuture<T> getOnlyValueAsync(EntityManagerFactory factory)
+   {
+      return executeAsync(JinqStream::getOnlyValue, factory);
+   }
+   
+   /**
+    * Returns a reactive publisher that sends the results of the stream to
+    * subscribers as they request them. Results are only read from the 
+    * database when there is demand for them, so a large number of results 
+    * can be sent with only a page of results (as set by the 
+    * "automaticPageSize" hint) held in memory. Results are sent using tasks
+    * run on the executor, so no thread is kept busy while a subscriber is
+    * not requesting more results.
+    * 
+    * Each subscriber runs the query with a new EntityManager created from 
+    * the factory, which is closed once the subscription ends. Entities sent 
+    * to subscribers are detached. On Java 9 and later, the publisher can be 
+    * used as a java.util.concurrent.Flow.Publisher by using 
+    * org.reactivestreams.FlowAdapters.toFlowPublisher().
+    * 
+    * Streams that could not be translated into a query are read using 
+    * the EntityManager of the original stream and can only be subscribed 
+    * to once.
+    * 
+    * @param factory used to create an EntityManager for running the query
+    * @param executor where results are read and sent to subscribers
+    */
+   public default Publisher<T> toPublisher(EntityManagerFactory factory, Executor executor)
+   {
+      return new JPAResultPublisher<>(this::iterator, executor);
+   }
+   
+   /**
+    * Returns a reactive publisher that sends results using a shared pool 
+    * of threads.
+    * @see #toPublisher(EntityManagerFactory, Executor)
+    */
+   public default Publisher<T> toPublisher(EntityManagerFactory factory)
+   {
+      return toPublisher(factory, AsyncQueryExecutor.DEFAULT);
+   }
 }
@@ -268,6 +268,13 @@ public class JPAJinqStreamWrapper<T> extends LazyWrappedStream<T> implements JPA
       return wrap(wrapped.crossJoin(join));
    }
 
+   @Override
+   public <U, K> JPAJinqStream<Pair<T, U>> hashJoin(Collection<U> joined,
+         Select<T, K> leftKey, Select<U, K> rightKey)
+   {
+      return wrap(wrapped.hashJoin(joined, leftKey, rightKey));
+   }
+
 
    @Override
    public <U, V> JPAJinqStream<Pair<U, V>> group(
@@ -442,4 +449,24 @@ public class JPAJinqStreamWrapper<T> extends LazyWrappedStream<T> implements JPA
       Set<T> saved = otherSet.collect(Collectors.toSet());
       return wrap(JinqStream.from(filter(el -> !saved.contains(el)).collect(Collectors.toList())));
    }
+
+   @Override
+   public <U> long updateAll(Select<T, U> field, Select<T, U> value)
+   {
+      // Entities that are in memory can't be changed in bulk
+      throw new IllegalArgumentException("Bulk updates can only be made on streams that can be translated into a query");
+   }
+
+   @Override
+   public <U, V> long updateAll(Select<T, U> field1, Select<T, U> value1,
+         Select<T, V> field2, Select<T, V> value2)
+   {
+      throw new IllegalArgumentException("Bulk updates can only be made on streams that can be translated into a query");
+   }
+
+   @Override
+   public long deleteAll()
+   {
+      throw new IllegalArgumentException("Bulk deletes can only be made on streams that can be translated into a query");
+   }
 }
@@ -0,0 +1,110 @@
+package org.jinq.jpa;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+
+import org.jinq.jpa.transform.JPAQueryComposerCache;
+
+/**
+ * Registers the JPQL queries generated by Jinq as named queries with
+ * the EntityManagerFactory. The JPA provider only needs to parse the JPQL
+ * of a named query once when it is registered instead of looking up or
+ * parsing the JPQL every time the query is created.
+ * 
+ * Named queries can't be removed from an EntityManagerFactory once they
+ * are registered, and Jinq puts constants directly into the JPQL, so the
+ * number of queries registered with each factory is capped. Once the cap
+ * is reached, new JPQL is run as an ordinary query instead.
+ */
+class JPANamedQueryRegistry
+{
+   /**
+    * Prefix of the names given to the queries registered by Jinq
+    */
+   static final String NAMED_QUERY_PREFIX = "org.jinq.jpa.query.";
+
+   /**
+    * Shared by all registries so that registries used with the same
+    * EntityManagerFactory never give the same name to different queries
+    * (registering a query under an existing name replaces the old query)
+    */
+   private static final AtomicInteger nextQueryId = new AtomicInteger();
+   
+   private volatile int maxQueries;
+
+   /**
+    * Holds the name of each JPQL query that has been registered with
+    * each EntityManagerFactory
+    */
+   private final Map<EntityManagerFactory, Map<String, String>> registeredQueries =
+         Collections.synchronizedMap(new WeakHashMap<>());
+
+   JPANamedQueryRegistry()
+   {
+      this(JPAQueryComposerCache.DEFAULT_MAX_ENTRIES);
+   }
+   
+   /**
+    * @param maxQueries maximum number of queries to register with each 
+    *    EntityManagerFactory, or a value less than or equal to zero for 
+    *    no limit
+    */
+   JPANamedQueryRegistry(int maxQueries)
+   {
+      this.maxQueries = maxQueries;
+   }
+   
+   /**
+    * Changes the maximum number of queries registered with each 
+    * EntityManagerFactory. Queries that are already registered stay 
+    * registered.
+    */
+   void setMaxQueries(int maxQueries)
+   {
+      this.maxQueries = maxQueries;
+   }
+
+   /**
+    * Creates a query for some JPQL by using a named query, registering
+    * the JPQL as a new named query if needed.
+    */
+   Query createQuery(EntityManager em, String queryString)
+   {
+      EntityManagerFactory factory = em.getEntityManagerFactory();
+      Map<String, String> queryNames = registeredQueries.computeIfAbsent(factory, f -> new ConcurrentHashMap<>());
+      String name = queryNames.get(queryString);
+      if (name == null)
+      {
+         synchronized (queryNames)
+         {
+            name = queryNames.get(queryString);
+            if (name == null)
+            {
+               int max = maxQueries;
+               if (max > 0 && queryNames.size() >= max)
+                  return em.createQuery(queryString);
+               name = NAMED_QUERY_PREFIX + nextQueryId.incrementAndGet();
+               factory.addNamedQuery(name, em.createQuery(queryString));
+               queryNames.put(queryString, name);
+            }
+         }
+      }
+      return em.createNamedQuery(name);
+   }
+
+   /**
+    * @return the number of queries registered with the factory
+    */
+   int getRegisteredQueryCount(EntityManagerFactory factory)
+   {
+      Map<String, String> queryNames = registeredQueries.get(factory);
+      return queryNames == null ? 0 : queryNames.size();
+   }
+}
@@ -1,6 +1,8 @@
 package org.jinq.jpa;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -12,13 +14,17 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.Parameter;
 import jakarta.persistence.Query;
 
+import org.jinq.jpa.jpqlquery.EntityDependencyFinder;
 import org.jinq.jpa.jpqlquery.GeneratedQueryParameter;
 import org.jinq.jpa.jpqlquery.JPQLQuery;
+import org.jinq.jpa.jpqlquery.KeysetPagingQuery;
 import org.jinq.jpa.jpqlquery.RowReader;
 import org.jinq.jpa.jpqlquery.SelectFromWhere;
+import org.jinq.jpa.jpqlquery.UpdateDeleteQuery;
 import org.jinq.jpa.transform.AggregateTransform;
 import org.jinq.jpa.transform.CountTransform;
 import org.jinq.jpa.transform.CrossJoinTransform;
+import org.jinq.jpa.transform.DeleteTransform;
 import org.jinq.jpa.transform.DistinctTransform;
 import org.jinq.jpa.transform.GroupingTransform;
 import org.jinq.jpa.transform.JPAQueryComposerCache;
@@ -42,6 +48,7 @@ import org.jinq.jpa.transform.OuterJoinTransform;
 import org.jinq.jpa.transform.QueryTransformException;
 import org.jinq.jpa.transform.SelectTransform;
 import org.jinq.jpa.transform.SortingTransform;
+import org.jinq.jpa.transform.UpdateTransform;
 import org.jinq.jpa.transform.WhereTransform;
 import org.jinq.orm.internal.QueryComposer;
 import org.jinq.orm.stream.JinqStream.AggregateGroup;
@@ -64,6 +71,7 @@ class JPAQueryComposer<T> implements QueryComposer<T>
 {
    final MetamodelUtil metamodel;
    final JPAQueryComposerCache cachedQueries;
+   final JPANamedQueryRegistry namedQueries;
    final JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory;
    final EntityManager em;
    final JPQLQuery<T> query;
@@ -77,16 +85,25 @@ class JPAQueryComposer<T> implements QueryComposer<T>
     * than query generation.
     */
    List<LambdaInfo> lambdas = new ArrayList<>();
+   
+   /**
+    * Holds the values passed to limit() and skip() when creating this query. 
+    * Like query parameters, they are kept out of the generated query so that 
+    * queries that only differ in these values can share the same cached query.
+    */
+   List<Long> limitSkipValues = new ArrayList<>();
 
    private JPAQueryComposer(JPAQueryComposer<?> base, JPQLQuery<T> query, List<LambdaInfo> chainedLambdas, LambdaInfo...additionalLambdas)
    {
-      this(base.metamodel, base.cachedQueries, base.lambdaAnalyzer, base.jpqlQueryTransformConfigurationFactory, base.em, base.hints, query, chainedLambdas, additionalLambdas);
+      this(base.metamodel, base.cachedQueries, base.namedQueries, base.lambdaAnalyzer, base.jpqlQueryTransformConfigurationFactory, base.em, base.hints, query, chainedLambdas, additionalLambdas);
+      limitSkipValues.addAll(base.limitSkipValues);
    }
 
-   private JPAQueryComposer(MetamodelUtil metamodel, JPAQueryComposerCache cachedQueries, LambdaAnalysisFactory lambdaAnalyzer, JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory, EntityManager em, JinqJPAHints hints, JPQLQuery<T> query, List<LambdaInfo> chainedLambdas, LambdaInfo...additionalLambdas)
+   private JPAQueryComposer(MetamodelUtil metamodel, JPAQueryComposerCache cachedQueries, JPANamedQueryRegistry namedQueries, LambdaAnalysisFactory lambdaAnalyzer, JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory, EntityManager em, JinqJPAHints hints, JPQLQuery<T> query, List<LambdaInfo> chainedLambdas, LambdaInfo...additionalLambdas)
    {
       this.metamodel = metamodel;
       this.cachedQueries = cachedQueries;
+      this.namedQueries = namedQueries;
       this.lambdaAnalyzer = lambdaAnalyzer;
       this.jpqlQueryTransformConfigurationFactory = jpqlQueryTransformConfigurationFactory;
       this.em = em;
@@ -97,9 +114,20 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       this.hints = new JinqJPAHints(hints);
    }
 
-   public static <U> JPAQueryComposer<U> findAllEntities(MetamodelUtil metamodel, JPAQueryComposerCache cachedQueries, LambdaAnalysisFactory lambdaAnalyzer, JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory, EntityManager em, JinqJPAHints hints, JPQLQuery<U> findAllQuery)
+   public static <U> JPAQueryComposer<U> findAllEntities(MetamodelUtil metamodel, JPAQueryComposerCache cachedQueries, JPANamedQueryRegistry namedQueries, LambdaAnalysisFactory lambdaAnalyzer, JPQLQueryTransformConfigurationFactory jpqlQueryTransformConfigurationFactory, EntityManager em, JinqJPAHints hints, JPQLQuery<U> findAllQuery)
+   {
+      return new JPAQueryComposer<>(metamodel, cachedQueries, namedQueries, lambdaAnalyzer, jpqlQueryTransformConfigurationFactory, em, hints, findAllQuery, new ArrayList<>());
+   }
+
+   /**
+    * Returns a copy of this query that is run using a different 
+    * EntityManager.
+    */
+   JPAQueryComposer<T> withEntityManager(EntityManager otherEm)
    {
-      return new JPAQueryComposer<>(metamodel, cachedQueries, lambdaAnalyzer, jpqlQueryTransformConfigurationFactory, em, hints, findAllQuery, new ArrayList<>());
+      JPAQueryComposer<T> composer = new JPAQueryComposer<>(metamodel, cachedQueries, namedQueries, lambdaAnalyzer, jpqlQueryTransformConfigurationFactory, otherEm, hints, query, lambdas);
+      composer.limitSkipValues.addAll(limitSkipValues);
+      return composer;
    }
 
    @Override
@@ -110,27 +138,136 @@ class JPAQueryComposer<T> implements QueryComposer<T>
 
    private void translationFail()
    {
-      if (hints.dieOnError) throw new IllegalArgumentException("Could not translate code to a query"); 
+      translationFail(null);
    }
    
    private void translationFail(Throwable e)
    {
+      if (hints.queryMetrics != null) hints.queryMetrics.recordTranslationFailure(e);
       if (hints.dieOnError) throw new IllegalArgumentException("Could not translate code to a query", e); 
    }
    
+   private long startTiming()
+   {
+      return hints.queryMetrics != null ? System.nanoTime() : 0;
+   }
+   
+   private void recordTiming(JPAQueryMetrics.Stage stage, long startTime)
+   {
+      if (hints.queryMetrics != null) 
+         hints.queryMetrics.recordTiming(stage, System.nanoTime() - startTime);
+   }
+   
+   private void recordCacheLookup(Optional<JPQLQuery<?>> cachedQuery)
+   {
+      if (hints.useCaching && hints.queryMetrics != null)
+         hints.queryMetrics.recordCacheLookup(cachedQuery != null);
+   }
+   
+   private LambdaInfo extractLambda(Object lambda, int lambdaIndex)
+   {
+      long startTime = startTiming();
+      LambdaInfo lambdaInfo = lambdaAnalyzer.extractSurfaceInfo(lambda, lambdaIndex, hints.dieOnError);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_EXTRACTION, startTime);
+      return lambdaInfo;
+   }
+   
+   private LambdaAnalysis analyzeLambda(LambdaInfo lambdaInfo)
+   {
+      long startTime = startTiming();
+      LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_ANALYSIS, startTime);
+      return lambdaAnalysis;
+   }
+   
+   private LambdaAnalysis partiallyAnalyzeLambda(LambdaInfo lambdaInfo)
+   {
+      long startTime = startTiming();
+      LambdaAnalysis lambdaAnalysis = lambdaInfo.partiallyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe);
+      recordTiming(JPAQueryMetrics.Stage.LAMBDA_ANALYSIS, startTime);
+      return lambdaAnalysis;
+   }
+   
+   private String generateQueryString(JPQLQuery<?> query)
+   {
+      long startTime = startTiming();
+      String queryString = query.getQueryString();
+      recordTiming(JPAQueryMetrics.Stage.QUERY_GENERATION, startTime);
+      return queryString;
+   }
+   
+   private Query createQuery(String queryString)
+   {
+      long startTime = startTiming();
+      Query q = hints.useNamedQueries ? 
+            namedQueries.createQuery(em, queryString) : em.createQuery(queryString);
+      recordTiming(JPAQueryMetrics.Stage.CREATE_QUERY, startTime);
+      return q;
+   }
+   
+   private List<Object> fetchPage(Query q)
+   {
+      long startTime = startTiming();
+      List<Object> results = q.getResultList();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return results;
+   }
+   
+   private T readResult(RowReader<T> reader, Object result)
+   {
+      long startTime = startTiming();
+      T value = reader.readResult(result);
+      recordTiming(JPAQueryMetrics.Stage.ROW_DECODING, startTime);
+      return value;
+   }
+   
    private void fillQueryParameters(Query q, List<GeneratedQueryParameter> parameters)
    {
       for (GeneratedQueryParameter param: parameters)
+         q.setParameter(param.paramName, getParameterValue(param));
+   }
+   
+   private Object getParameterValue(GeneratedQueryParameter param)
+   {
+      if (param.fieldName == null)
+         return lambdas.get(param.lambdaIndex).getCapturedArg(param.argIndex);
+      else
+         return lambdas.get(param.lambdaIndex).getField(param.fieldName);
+   }
+   
+   /**
+    * Creates the key used to look up the results of the query in the 
+    * result cache. The key holds the query string, the values of the
+    * query parameters, and any other values that affect the results. 
+    * Collections passed as parameters are copied so that changing them
+    * later does not change a key that is already in the cache.
+    */
+   private List<Object> resultCacheKey(String queryString, Object...extraValues)
+   {
+      List<Object> key = new ArrayList<>();
+      key.add(queryString);
+      for (GeneratedQueryParameter param: query.getQueryParameters())
       {
-         if (param.fieldName == null)
-         {
-            q.setParameter(param.paramName, lambdas.get(param.lambdaIndex).getCapturedArg(param.argIndex));
-         }
-         else
-         {
-            q.setParameter(param.paramName, lambdas.get(param.lambdaIndex).getField(param.fieldName));
-         }
+         Object val = getParameterValue(param);
+         if (val instanceof Collection)
+            val = new ArrayList<>((Collection<?>)val);
+         key.add(val);
       }
+      for (Object val: extraValues)
+         key.add(val);
+      return key;
+   }
+   
+   /**
+    * Entities are managed by the EntityManager that loaded them, so they 
+    * must not be handed to other EntityManagers or threads through the 
+    * result cache. Only the results of queries that return plain values
+    * are cached.
+    */
+   private boolean isResultCacheable()
+   {
+      return hints.resultCache != null 
+            && !EntityDependencyFinder.mayReturnEntities(query, em.getMetamodel());
    }
    
    private void logQuery(String queryString, Query q)
@@ -150,22 +287,108 @@ class JPAQueryComposer<T> implements QueryComposer<T>
    
    public T executeAndGetSingleResult()
    {
-      final String queryString = query.getQueryString();
-      final Query q = em.createQuery(queryString);
+      if (!isResultCacheable())
+         return executeAndGetSingleResultFromDatabase();
+      JPAResultCache cache = hints.resultCache;
+      List<Object> key = resultCacheKey(generateQueryString(query), "singleResult");
+      List<?> cached = cache.findCachedResults(key);
+      if (cached != null)
+         return (T)cached.get(0);
+      long startCount = cache.startQuery();
+      T result = executeAndGetSingleResultFromDatabase();
+      cache.cacheResults(key, Collections.singletonList(result), 
+            EntityDependencyFinder.findEntities(query, em.getMetamodel()), startCount);
+      return result;
+   }
+   
+   private T executeAndGetSingleResultFromDatabase()
+   {
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
       fillQueryParameters(q, query.getQueryParameters());
       final RowReader<T> reader = query.getRowReader();
       logQuery(queryString, q);
       if (hints.jakartaPersistenceFetchgraph != null)
          q.setHint("jakarta.persistence.fetchgraph", hints.jakartaPersistenceFetchgraph);
-      return reader.readResult(q.getSingleResult());
+      long startTime = startTiming();
+      Object result = q.getSingleResult();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      return readResult(reader, result);
+   }
+   
+   /**
+    * Runs a bulk UPDATE or DELETE statement.
+    * @return the number of entities changed
+    */
+   private long executeUpdate()
+   {
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
+      fillQueryParameters(q, query.getQueryParameters());
+      logQuery(queryString, q);
+      long startTime = startTiming();
+      long count = q.executeUpdate();
+      recordTiming(JPAQueryMetrics.Stage.FETCH_PAGE, startTime);
+      // Cached results that use the changed entities are now out of date
+      if (hints.resultCache != null)
+         hints.resultCache.invalidate(((UpdateDeleteQuery<?>)query).getEntityName());
+      return count;
+   }
+   
+   @Override
+   public boolean isParallelResults()
+   {
+      // The results are still read from the database in a single thread 
+      // at a time, but the results can be processed in parallel
+      return hints.parallelResults;
    }
    
    @Override
    public Iterator<T> executeAndReturnResultIterator(
          Consumer<Throwable> exceptionReporter)
    {
-      final String queryString = query.getQueryString();
-      final Query q = em.createQuery(queryString);
+      if (!isResultCacheable())
+         return executeAndReturnResultIteratorFromDatabase();
+      
+      // Queries that use the result cache read all of their results 
+      // at once so that they can be cached
+      JPAResultCache cache = hints.resultCache;
+      long skip = 0;
+      long limit = Long.MAX_VALUE;
+      if (query instanceof SelectFromWhere)
+      {
+         SelectFromWhere<?> sfw = (SelectFromWhere<?>)query;
+         if (sfw.limit >= 0)
+            limit = sfw.getLimitAmount(limitSkipValues);
+         if (sfw.skip >= 0)
+            skip = sfw.getSkipAmount(limitSkipValues);
+      }
+      List<Object> key = resultCacheKey(generateQueryString(query), skip, limit);
+      List<?> cached = cache.findCachedResults(key);
+      if (cached != null)
+         return (Iterator<T>)cached.iterator();
+      long startCount = cache.startQuery();
+      List<T> results = new ArrayList<>();
+      executeAndReturnResultIteratorFromDatabase().forEachRemaining(results::add);
+      cache.cacheResults(key, results, 
+            EntityDependencyFinder.findEntities(query, em.getMetamodel()), startCount);
+      return results.iterator();
+   }
+   
+   private Iterator<T> executeAndReturnResultIteratorFromDatabase()
+   {
+      if (hints.useKeysetPaging && hints.automaticResultsPagingSize > 0 
+            && query instanceof SelectFromWhere
+            && ((SelectFromWhere<T>)query).canKeysetPage())
+      {
+         SelectFromWhere<T> sfw = (SelectFromWhere<T>)query;
+         String idField = metamodel.singleIdFieldName(sfw.getKeysetPagingEntityName());
+         if (idField != null)
+            return executeWithKeysetPaging(sfw, sfw.getKeysetPagingQuery(idField));
+      }
+      
+      final String queryString = generateQueryString(query);
+      final Query q = createQuery(queryString);
       fillQueryParameters(q, query.getQueryParameters());
       final RowReader<T> reader = query.getRowReader();
       long skip = 0;
@@ -174,10 +397,13 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       {
          SelectFromWhere<?> sfw = (SelectFromWhere<?>)query;
          if (sfw.limit >= 0)
-            limit = sfw.limit;
+            limit = sfw.getLimitAmount(limitSkipValues);
          if (sfw.skip >= 0)
-            skip = sfw.skip;
+            skip = sfw.getSkipAmount(limitSkipValues);
       }
+      // Some JPA providers treat a maximum of 0 results as having no maximum
+      if (limit == 0)
+         return Collections.emptyIterator();
       final long initialOffset = skip;
       final long maxTotalResults = limit;
       if (hints.jakartaPersistenceFetchgraph != null)
@@ -208,7 +434,7 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                if (hints.automaticResultsPagingSize > 0)
                {
                   logQuery(queryString, q);
-                  List<Object> results = q.getResultList();
+                  List<Object> results = fetchPage(q);
                   if (results.size() > hints.automaticResultsPagingSize)
                   {
                      hasNextPage = true;
@@ -221,13 +447,86 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                else
                {
                   logQuery(queryString, q);
-                  List<Object> results = q.getResultList();
+                  List<Object> results = fetchPage(q);
                   resultIterator = results.iterator();
                }
             }
             if (resultIterator.hasNext())
             {
-               nextElement(reader.readResult(resultIterator.next()));
+               nextElement(readResult(reader, resultIterator.next()));
+            }
+            else 
+            {
+               if (hasNextPage)
+               {
+                  hasNextPage = false;
+                  resultIterator = null;
+                  generateNext();
+               }
+               else
+               {
+                  noMoreElements();
+               }
+            }
+         }
+      };
+   }
+
+   /**
+    * Streams the results of a query in pages by sorting them by the id
+    * of the entity and then starting each page after the last id of the
+    * previous page. Unlike paging with offsets, the cost of reading a 
+    * page does not grow as more results are read. 
+    */
+   private Iterator<T> executeWithKeysetPaging(SelectFromWhere<T> sfw, KeysetPagingQuery<T> paging)
+   {
+      final long initialOffset = sfw.skip >= 0 ? sfw.getSkipAmount(limitSkipValues) : 0;
+      final long maxTotalResults = sfw.limit >= 0 ? sfw.getLimitAmount(limitSkipValues) : Long.MAX_VALUE;
+      if (maxTotalResults == 0)
+         return Collections.emptyIterator();
+      return new NextOnlyIterator<T>() {
+         boolean hasNextPage = false;
+         Iterator<Object> resultIterator;
+         Object lastKey = null;
+         long totalRead = 0;
+         @Override protected void generateNext()
+         {
+            if (resultIterator == null)
+            {
+               JPQLQuery<T> pageQuery = lastKey == null ? paging.getFirstPageQuery() : paging.getNextPageQuery();
+               String queryString = generateQueryString(pageQuery);
+               Query q = createQuery(queryString);
+               fillQueryParameters(q, pageQuery.getQueryParameters());
+               if (lastKey == null)
+               {
+                  if (initialOffset > 0) q.setFirstResult((int)initialOffset);
+               }
+               else
+                  q.setParameter(KeysetPagingQuery.LAST_KEY_PARAMETER, lastKey);
+               if (hints.jakartaPersistenceFetchgraph != null)
+                  q.setHint("jakarta.persistence.fetchgraph", hints.jakartaPersistenceFetchgraph);
+               long pageSize = hints.automaticResultsPagingSize + 1;
+               if (maxTotalResults != Long.MAX_VALUE)
+                  pageSize = Math.min(pageSize, maxTotalResults - totalRead);
+               q.setMaxResults((int)pageSize);
+               logQuery(queryString, q);
+               List<Object> results = fetchPage(q);
+               if (results.size() > hints.automaticResultsPagingSize)
+               {
+                  hasNextPage = true;
+                  results.remove(hints.automaticResultsPagingSize);
+               }
+               if (!results.isEmpty())
+                  lastKey = paging.readKey(results.get(results.size() - 1));
+               totalRead += results.size();
+               resultIterator = results.iterator();
+            }
+            if (resultIterator.hasNext())
+            {
+               long startTime = startTiming();
+               T result = paging.readResult(resultIterator.next());
+               recordTiming(JPAQueryMetrics.Stage.ROW_DECODING, startTime);
+               nextElement(result);
             }
             else 
             {
@@ -250,16 +549,20 @@ class JPAQueryComposer<T> implements QueryComposer<T>
    {
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), null) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
+            long startTime = startTiming();
             newQuery = transform.apply(query, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -269,29 +572,44 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), null, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new JPAQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas);
    }
    
    public <U> JPAQueryComposer<U> applyTransformWithLambda(JPQLOneLambdaQueryTransform transform, Object lambda)
    {
-      LambdaInfo lambdaInfo = lambdaAnalyzer.extractSurfaceInfo(lambda, lambdas.size(), hints.dieOnError);
-      if (lambdaInfo == null) { translationFail(); return null; }
+      return applyTransformWithLambda(transform, lambda, false);
+   }
+   
+   /**
+    * @param isPartial whether the lambda should only be partially analyzed
+    *    so that the parts of it that can be translated can be put into 
+    *    the query. Failures aren't reported then because the lambda has
+    *    already failed to be fully translated. 
+    */
+   private <U> JPAQueryComposer<U> applyTransformWithLambda(JPQLOneLambdaQueryTransform transform, Object lambda, boolean isPartial)
+   {
+      LambdaInfo lambdaInfo = extractLambda(lambda, lambdas.size());
+      if (lambdaInfo == null) { if (!isPartial) translationFail(); return null; }
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo.getLambdaSourceString()}) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
-            LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
-            if (lambdaAnalysis == null) { translationFail(); return null; }
+            LambdaAnalysis lambdaAnalysis = isPartial ? partiallyAnalyzeLambda(lambdaInfo) : analyzeLambda(lambdaInfo);
+            if (lambdaAnalysis == null) { if (!isPartial) translationFail(); return null; }
             getConfig().checkLambdaSideEffects(lambdaAnalysis);
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalysis, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -301,34 +619,38 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo.getLambdaSourceString()}, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { if (!isPartial) translationFail(failure); return null; }
       return new JPAQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfo);
    }
 
    public <U> JPAQueryComposer<U> applyTransformWithTwoLambdas(OuterJoinOnTransform transform, Object lambda1, Object lambda2)
    {
-      LambdaInfo lambdaInfo1 = lambdaAnalyzer.extractSurfaceInfo(lambda1, lambdas.size(), hints.dieOnError);
+      LambdaInfo lambdaInfo1 = extractLambda(lambda1, lambdas.size());
       if (lambdaInfo1 == null) { translationFail(); return null; }
-      LambdaInfo lambdaInfo2 = lambdaAnalyzer.extractSurfaceInfo(lambda2, lambdas.size() + 1, hints.dieOnError);
+      LambdaInfo lambdaInfo2 = extractLambda(lambda2, lambdas.size() + 1);
       if (lambdaInfo2 == null) { translationFail(); return null; }
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo1.getLambdaSourceString(), lambdaInfo2.getLambdaSourceString()}) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<U> newQuery = null;
          try {
-            LambdaAnalysis lambdaAnalysis1 = lambdaInfo1.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+            LambdaAnalysis lambdaAnalysis1 = analyzeLambda(lambdaInfo1);
             if (lambdaAnalysis1 == null) { translationFail(); return null; }
-            LambdaAnalysis lambdaAnalysis2 = lambdaInfo2.fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+            LambdaAnalysis lambdaAnalysis2 = analyzeLambda(lambdaInfo2);
             if (lambdaAnalysis2 == null) { translationFail(); return null; }
             getConfig().checkLambdaSideEffects(lambdaAnalysis1);
             getConfig().checkLambdaSideEffects(lambdaAnalysis1);
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalysis1, lambdaAnalysis2, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -338,7 +660,7 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                cachedQuery = cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), new String[] {lambdaInfo1.getLambdaSourceString(), lambdaInfo2.getLambdaSourceString()}, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new JPAQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfo1, lambdaInfo2);
    }
 
@@ -348,13 +670,15 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       String [] lambdaSources = new String[lambdaInfos.length]; 
       for (int n = 0; n < groupingLambdas.length; n++)
       {
-         lambdaInfos[n] = lambdaAnalyzer.extractSurfaceInfo(groupingLambdas[n], lambdas.size() + n, hints.dieOnError);
+         lambdaInfos[n] = extractLambda(groupingLambdas[n], lambdas.size() + n);
          if (lambdaInfos[n] == null) { translationFail(); return null; }
          lambdaSources[n] = lambdaInfos[n].getLambdaSourceString();
       }
       
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ? 
             cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), lambdaSources) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
@@ -363,15 +687,17 @@ class JPAQueryComposer<T> implements QueryComposer<T>
             LambdaAnalysis[] lambdaAnalyses = new LambdaAnalysis[lambdaInfos.length];
             for (int n = 0; n < lambdaInfos.length; n++)
             {
-               lambdaAnalyses[n] = lambdaInfos[n].fullyAnalyze(metamodel, hints.lambdaClassLoader, hints.isObjectEqualsSafe, hints.isAllEqualsSafe, hints.isCollectionContainsSafe, hints.dieOnError);
+               lambdaAnalyses[n] = analyzeLambda(lambdaInfos[n]);
                if (lambdaAnalyses[n] == null) { translationFail(); return null; }
                getConfig().checkLambdaSideEffects(lambdaAnalyses[n]);
             }
+            long startTime = startTiming();
             newQuery = transform.apply(query, lambdaAnalyses, null);
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -381,7 +707,7 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                cachedQueries.cacheQuery(query, transform.getTransformationTypeCachingTag(), lambdaSources, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new JPAQueryComposer<>(this, (JPQLQuery<U>)cachedQuery.get(), lambdas, lambdaInfos);
    }
 
@@ -404,16 +730,20 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       JPQLQuery<?> otherQuery = otherComposer.query;
       Optional<JPQLQuery<?>> cachedQuery = hints.useCaching ?
             cachedQueries.findInCache(query, otherQuery, transform.getTransformationTypeCachingTag(), null) : null;
+      recordCacheLookup(cachedQuery);
+      QueryTransformException failure = null;
       if (cachedQuery == null)
       {
          cachedQuery = Optional.empty();
          JPQLQuery<V> newQuery = null;
          try {
+            long startTime = startTiming();
             newQuery = transform.apply(query, otherQuery, lambdas.size());
+            recordTiming(JPAQueryMetrics.Stage.TRANSFORM, startTime);
          }
          catch (QueryTransformException e)
          {
-            translationFail(e);
+            failure = e;
          }
          finally 
          {
@@ -423,7 +753,7 @@ class JPAQueryComposer<T> implements QueryComposer<T>
                cachedQueries.cacheQuery(query, otherQuery, transform.getTransformationTypeCachingTag(), null, cachedQuery);
          }
       }
-      if (!cachedQuery.isPresent()) { translationFail(); return null; }
+      if (!cachedQuery.isPresent()) { translationFail(failure); return null; }
       return new JPAQueryComposer<V>(this, (JPQLQuery<V>)cachedQuery.get(), lambdas, otherComposer.lambdas.toArray(new LambdaInfo[0]));
    }
 
@@ -459,6 +789,20 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       return applyTransformWithLambda(new WhereTransform(getConfig(), true), test);
    }
 
+   @Override
+   public <E extends Exception> JPAQueryComposer<T> wherePartially(Object testLambda)
+   {
+      if (!hints.partialWhere) return null;
+      return applyTransformWithLambda(new WhereTransform(getConfig(), false, true), testLambda, true);
+   }
+   
+   @Override
+   public <E extends Exception> JPAQueryComposer<T> whereWithSourcePartially(Object test)
+   {
+      if (!hints.partialWhere) return null;
+      return applyTransformWithLambda(new WhereTransform(getConfig(), true, true), test, true);
+   }
+
    @Override
    public <V extends Comparable<V>> JPAQueryComposer<T> sortedBy(
          Object sorter, boolean isAscending)
@@ -469,13 +813,19 @@ class JPAQueryComposer<T> implements QueryComposer<T>
    @Override
    public JPAQueryComposer<T> limit(long n)
    {
-      return applyTransformWithLambda(new LimitSkipTransform(getConfig(), true, n));
+      JPAQueryComposer<T> composer = applyTransformWithLambda(new LimitSkipTransform(getConfig(), true, limitSkipValues.size()));
+      if (composer != null)
+         composer.limitSkipValues.add(n);
+      return composer;
    }
 
    @Override
    public JPAQueryComposer<T> skip(long n)
    {
-      return applyTransformWithLambda(new LimitSkipTransform(getConfig(), false, n));
+      JPAQueryComposer<T> composer = applyTransformWithLambda(new LimitSkipTransform(getConfig(), false, limitSkipValues.size()));
+      if (composer != null)
+         composer.limitSkipValues.add(n);
+      return composer;
    }
 
    @Override
@@ -599,6 +949,36 @@ class JPAQueryComposer<T> implements QueryComposer<T>
       return applyTransformWithTwoQueryMerge(new SetOperationEmulationTransform(getConfig(), SetOperationEmulationTransform.SetOperationType.AND_NOT_EXCEPT), otherSet);
    }
 
+   /**
+    * Sets fields of the entities returned by the query using a single 
+    * bulk UPDATE statement.
+    * @param fieldValueLambdas pairs of lambdas. The first lambda of each
+    *    pair reads the field to be set, and the second gives its new value.
+    * @return the number of entities updated or null if the update 
+    *    could not be translated into a query
+    */
+   public Long updateAll(Object[] fieldValueLambdas)
+   {
+      JPAQueryComposer<T> result = applyTransformWithLambdas(new UpdateTransform(getConfig()), fieldValueLambdas);
+      if (result != null)
+         return result.executeUpdate();
+      return null;
+   }
+
+   /**
+    * Deletes the entities returned by the query using a single bulk 
+    * DELETE statement.
+    * @return the number of entities deleted or null if the delete 
+    *    could not be translated into a query
+    */
+   public Long deleteAll()
+   {
+      JPAQueryComposer<T> result = applyTransformWithLambda(new DeleteTransform(getConfig()));
+      if (result != null)
+         return result.executeUpdate();
+      return null;
+   }
+
    @Override
    public Long count()
    {
@@ -0,0 +1,52 @@
+package org.jinq.jpa;
+
+/**
+ * Can be passed to a JinqStream as a hint to collect timings of the
+ * different stages that Jinq goes through to translate a stream into
+ * JPQL and to run it. Timings are only measured when a listener is set.
+ */
+public interface JPAQueryMetrics
+{
+   /**
+    * The stages of translating and running a query that are timed.
+    */
+   public static enum Stage
+   {
+      /** Reading the code and captured parameters of a lambda */
+      LAMBDA_EXTRACTION,
+      /** Symbolically executing the code of a lambda */
+      LAMBDA_ANALYSIS,
+      /** Applying an analyzed lambda to a query */
+      TRANSFORM,
+      /** Generating the text of the JPQL query */
+      QUERY_GENERATION,
+      /** Creating the query object from the entity manager */
+      CREATE_QUERY,
+      /** Reading a page of results (or a single result) from the database */
+      FETCH_PAGE,
+      /** Converting a result row into the result objects of the stream */
+      ROW_DECODING
+   }
+
+   /**
+    * Called after each timed stage has completed.
+    * @param stage the stage that was timed
+    * @param nanos how long the stage took in nanoseconds
+    */
+   void recordTiming(Stage stage, long nanos);
+
+   /**
+    * Called whenever the cache of generated queries is checked for a
+    * previously translated query.
+    * @param hit whether the query was found in the cache
+    */
+   default void recordCacheLookup(boolean hit) {}
+
+   /**
+    * Called when Jinq could not translate part of a stream into a query
+    * and falls back to running the rest of the stream in Java.
+    * @param cause the reason the translation failed or null if there is
+    *    no further information
+    */
+   default void recordTranslationFailure(Throwable cause) {}
+}
@@ -0,0 +1,191 @@
+package org.jinq.jpa;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * Caches the results of queries so that running the same query with the
+ * same parameters again does not need to go to the database. Results are
+ * only cached for queries that are given a cache with the "resultCache"
+ * hint.
+ *
+ * Cached results expire after a fixed amount of time, and the least
+ * recently used results are evicted when the cache is full. Since the
+ * cache does not know when the database is changed, the application
+ * should call one of the invalidate() methods after changing entities so
+ * that cached results of queries involving those entities are discarded.
+ *
+ * The same result objects are returned to every query that finds them in
+ * the cache, even when the queries are made with different
+ * EntityManagers. Since entities belong to the EntityManager that loaded
+ * them, queries that return entities never use the cache. Only queries
+ * that return plain values (e.g. fields of entities or aggregates) have
+ * their results cached.
+ *
+ * The cache can be safely shared by many threads.
+ */
+public class JPAResultCache
+{
+   /**
+    * Cached results of a query along with the entities that the results
+    * depend on.
+    */
+   private static class CacheEntry
+   {
+      CacheEntry(List<?> results, Set<EntityType<?>> entities, long expiryTime)
+      {
+         this.results = results;
+         this.entities = entities;
+         this.expiryTime = expiryTime;
+      }
+      final List<?> results;
+      /**
+       * The entities used in the query or null if they aren't known, in
+       * which case the results are discarded whenever any entity is
+       * invalidated
+       */
+      final Set<EntityType<?>> entities;
+      final long expiryTime;
+
+      boolean dependsOn(String entityName)
+      {
+         if (entities == null) return true;
+         for (EntityType<?> entity: entities)
+            if (entity.getName().equals(entityName))
+               return true;
+         return false;
+      }
+
+      boolean dependsOn(Class<?> entityClass)
+      {
+         if (entities == null) return true;
+         for (EntityType<?> entity: entities)
+         {
+            // Queries on a superclass of an entity return instances of its
+            // subclasses, and queries on a subclass can read columns shared
+            // with its superclass
+            if (entity.getJavaType().isAssignableFrom(entityClass)
+                  || entityClass.isAssignableFrom(entity.getJavaType()))
+               return true;
+         }
+         return false;
+      }
+   }
+
+   public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+   private final int maxEntries;
+   private final long timeToLiveNanos;
+
+   /**
+    * Incremented whenever the cache is invalidated so that results of
+    * queries that were running during the invalidation are not cached.
+    */
+   private long invalidationCount = 0;
+
+   /**
+    * Cached results in least-recently used order. Guarded by the lock
+    * on this object.
+    */
+   private final LinkedHashMap<List<Object>, CacheEntry> cachedResults =
+         new LinkedHashMap<List<Object>, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override protected boolean removeEldestEntry(Map.Entry<List<Object>, CacheEntry> eldest)
+      {
+         return size() > maxEntries;
+      }
+   };
+
+   /**
+    * Creates a cache where results expire after the given amount of time
+    */
+   public JPAResultCache(long timeToLive, TimeUnit unit)
+   {
+      this(DEFAULT_MAX_ENTRIES, timeToLive, unit);
+   }
+
+   /**
+    * Creates a cache that holds the results of up to maxEntries queries.
+    * Results expire after the given amount of time.
+    */
+   public JPAResultCache(int maxEntries, long timeToLive, TimeUnit unit)
+   {
+      this.maxEntries = maxEntries;
+      this.timeToLiveNanos = unit.toNanos(timeToLive);
+   }
+
+   /**
+    * Discards the cached results of all queries that use the entity
+    * with the given name.
+    */
+   public synchronized void invalidate(String entityName)
+   {
+      invalidationCount++;
+      cachedResults.values().removeIf(entry -> entry.dependsOn(entityName));
+   }
+
+   /**
+    * Discards the cached results of all queries that use the given
+    * entity class or one of its superclasses or subclasses.
+    */
+   public synchronized void invalidate(Class<?> entityClass)
+   {
+      invalidationCount++;
+      cachedResults.values().removeIf(entry -> entry.dependsOn(entityClass));
+   }
+
+   /**
+    * Discards all cached results.
+    */
+   public synchronized void invalidateAll()
+   {
+      invalidationCount++;
+      cachedResults.clear();
+   }
+
+   /**
+    * @return the number of queries with results in the cache
+    */
+   public synchronized int size()
+   {
+      return cachedResults.size();
+   }
+
+   /**
+    * @return the cached results for a query or null if the results
+    *    aren't cached or have expired
+    */
+   synchronized List<?> findCachedResults(List<Object> key)
+   {
+      CacheEntry entry = cachedResults.get(key);
+      if (entry == null) return null;
+      if (System.nanoTime() - entry.expiryTime >= 0)
+      {
+         cachedResults.remove(key);
+         return null;
+      }
+      return entry.results;
+   }
+
+   /**
+    * Returns a count that must be passed to cacheResults() when the results
+    * of a query are cached so that results are not cached if the cache
+    * was invalidated while the query was running.
+    */
+   synchronized long startQuery()
+   {
+      return invalidationCount;
+   }
+
+   synchronized void cacheResults(List<Object> key, List<?> results, Set<EntityType<?>> entities, long startCount)
+   {
+      if (startCount != invalidationCount) return;
+      cachedResults.put(key, new CacheEntry(Collections.unmodifiableList(results), entities, System.nanoTime() + timeToLiveNanos));
+   }
+}
@@ -0,0 +1,236 @@
+package org.jinq.jpa;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the results of a query to a reactive subscriber. Results
+ * are only read from the query when the subscriber has requested them,
+ * so pages of results are only fetched from the database as they are
+ * needed. Results are sent to the subscriber from tasks run on an
+ * executor, and no thread is used while the subscriber has no
+ * outstanding demand.
+ *
+ * Each subscriber gets its own iterator over the results. If the
+ * iterator is AutoCloseable, it is closed once the subscription ends.
+ */
+class JPAResultPublisher<T> implements Publisher<T>
+{
+   final Supplier<Iterator<T>> results;
+   final Executor executor;
+
+   JPAResultPublisher(Supplier<Iterator<T>> results, Executor executor)
+   {
+      this.results = results;
+      this.executor = executor;
+   }
+
+   @Override
+   public void subscribe(Subscriber<? super T> subscriber)
+   {
+      if (subscriber == null) throw new NullPointerException();
+      ResultSubscription<T> subscription = new ResultSubscription<>(subscriber, results, executor);
+      subscription.start();
+   }
+
+   /**
+    * An iterator that runs some cleanup code when it is closed
+    */
+   static class ClosingIterator<T> implements Iterator<T>, AutoCloseable
+   {
+      final Iterator<T> wrapped;
+      final Runnable onClose;
+
+      ClosingIterator(Iterator<T> wrapped, Runnable onClose)
+      {
+         this.wrapped = wrapped;
+         this.onClose = onClose;
+      }
+
+      @Override public boolean hasNext()
+      {
+         return wrapped.hasNext();
+      }
+
+      @Override public T next()
+      {
+         return wrapped.next();
+      }
+
+      @Override public void close()
+      {
+         onClose.run();
+      }
+   }
+
+   static class ResultSubscription<T> implements Subscription
+   {
+      final Subscriber<? super T> subscriber;
+      final Supplier<Iterator<T>> results;
+      final Executor executor;
+
+      /**
+       * Number of results requested by the subscriber that have not been
+       * sent yet. Long.MAX_VALUE means that there is no limit.
+       */
+      final AtomicLong demand = new AtomicLong();
+
+      /**
+       * Number of times that more work was signaled while the results
+       * were being sent. Only the task that increments this from 0 sends
+       * results, so results are never sent from two threads at once.
+       */
+      final AtomicInteger pendingWork = new AtomicInteger();
+
+      volatile boolean cancelled = false;
+
+      /**
+       * Error from an invalid request that should be sent to the subscriber
+       */
+      volatile Throwable requestError;
+
+      // Only accessed while sending results
+      Iterator<T> iterator;
+      boolean isDone = false;
+
+      ResultSubscription(Subscriber<? super T> subscriber, Supplier<Iterator<T>> results, Executor executor)
+      {
+         this.subscriber = subscriber;
+         this.results = results;
+         this.executor = executor;
+      }
+
+      /**
+       * Sends the subscription to the subscriber. The sending of results
+       * is claimed before calling onSubscribe(), so requests made from
+       * inside onSubscribe() are only acted on once it has returned.
+       */
+      void start()
+      {
+         pendingWork.set(1);
+         subscriber.onSubscribe(this);
+         executor.execute(this::sendResults);
+      }
+
+      @Override
+      public void request(long n)
+      {
+         if (n <= 0)
+            requestError = new IllegalArgumentException("Subscribers must request a positive number of results");
+         else
+         {
+            long current, updated;
+            do {
+               current = demand.get();
+               if (current == Long.MAX_VALUE) break;
+               updated = current + n;
+               if (updated < 0) updated = Long.MAX_VALUE;
+            } while (!demand.compareAndSet(current, updated));
+         }
+         scheduleSend();
+      }
+
+      @Override
+      public void cancel()
+      {
+         cancelled = true;
+         scheduleSend();
+      }
+
+      private void scheduleSend()
+      {
+         if (pendingWork.getAndIncrement() == 0)
+            executor.execute(this::sendResults);
+      }
+
+      private void sendResults()
+      {
+         int missed = 1;
+         while (true)
+         {
+            if (!isDone)
+               sendAvailableResults();
+            missed = pendingWork.addAndGet(-missed);
+            if (missed == 0) return;
+         }
+      }
+
+      private void sendAvailableResults()
+      {
+         try {
+            if (cancelled)
+            {
+               finish();
+               return;
+            }
+            if (requestError != null)
+            {
+               finish();
+               subscriber.onError(requestError);
+               return;
+            }
+            long requested = demand.get();
+            long sent = 0;
+            while (sent < requested)
+            {
+               if (iterator == null)
+                  iterator = results.get();
+               if (!iterator.hasNext())
+               {
+                  finish();
+                  subscriber.onComplete();
+                  return;
+               }
+               T next = iterator.next();
+               try {
+                  subscriber.onNext(next);
+               }
+               catch (Throwable e)
+               {
+                  // The subscriber is broken, so treat it as having
+                  // cancelled the subscription instead of sending it an error
+                  cancelled = true;
+                  finish();
+                  return;
+               }
+               sent++;
+               if (cancelled)
+               {
+                  finish();
+                  return;
+               }
+            }
+            if (requested != Long.MAX_VALUE)
+               demand.addAndGet(-sent);
+         }
+         catch (Throwable e)
+         {
+            finish();
+            subscriber.onError(e);
+         }
+      }
+
+      private void finish()
+      {
+         isDone = true;
+         if (iterator instanceof AutoCloseable)
+         {
+            try {
+               ((AutoCloseable)iterator).close();
+            }
+            catch (Exception e)
+            {
+               // Nothing more can be sent to the subscriber, so ignore it
+            }
+         }
+         iterator = null;
+      }
+   }
+}
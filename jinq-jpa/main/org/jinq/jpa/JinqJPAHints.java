@@ -8,9 +8,15 @@ class JinqJPAHints
    public JinqJPAHints(JinqJPAHints oldHints)
    {
       automaticResultsPagingSize = oldHints.automaticResultsPagingSize;
+      parallelResults = oldHints.parallelResults;
+      useKeysetPaging = oldHints.useKeysetPaging;
+      useNamedQueries = oldHints.useNamedQueries;
       queryLogger = oldHints.queryLogger;
+      queryMetrics = oldHints.queryMetrics;
+      resultCache = oldHints.resultCache;
       lambdaClassLoader = oldHints.lambdaClassLoader;
       dieOnError = oldHints.dieOnError;
+      partialWhere = oldHints.partialWhere;
       useCaching = oldHints.useCaching;
       isObjectEqualsSafe = oldHints.isObjectEqualsSafe;
       isCollectionContainsSafe = oldHints.isCollectionContainsSafe;
@@ -18,9 +24,15 @@ class JinqJPAHints
    }
    
    public int automaticResultsPagingSize = 10000;
+   public boolean parallelResults = false;
+   public boolean useKeysetPaging = false;
+   public boolean useNamedQueries = false;
    public JPAQueryLogger queryLogger = null;
+   public JPAQueryMetrics queryMetrics = null;
+   public JPAResultCache resultCache = null;
    public ClassLoader lambdaClassLoader = null;
    public boolean dieOnError = true;
+   public boolean partialWhere = true;
    public boolean useCaching = true;
    public boolean isObjectEqualsSafe = true;
    public boolean isAllEqualsSafe = true;
@@ -31,12 +43,24 @@ class JinqJPAHints
    {
       if ("automaticPageSize".equals(name) && val instanceof Integer)
          automaticResultsPagingSize = (int)val;
+      else if ("parallelResults".equals(name) && val instanceof Boolean)
+         parallelResults = (Boolean)val;
+      else if ("automaticPageKeyset".equals(name) && val instanceof Boolean)
+         useKeysetPaging = (Boolean)val;
+      else if ("useNamedQueries".equals(name) && val instanceof Boolean)
+         useNamedQueries = (Boolean)val;
       else if ("queryLogger".equals(name) && val instanceof JPAQueryLogger)
          queryLogger = (JPAQueryLogger)val;
+      else if ("queryMetrics".equals(name) && val instanceof JPAQueryMetrics)
+         queryMetrics = (JPAQueryMetrics)val;
+      else if ("resultCache".equals(name) && val instanceof JPAResultCache)
+         resultCache = (JPAResultCache)val;
       else if ("lambdaClassLoader".equals(name) && val instanceof ClassLoader)
          lambdaClassLoader = (ClassLoader)val;
       else if ("exceptionOnTranslationFail".equals(name) && val instanceof Boolean)
          dieOnError = (Boolean)val;
+      else if ("partialWhere".equals(name) && val instanceof Boolean)
+         partialWhere = (Boolean)val;
       else if ("useCaching".equals(name) && val instanceof Boolean)
          useCaching = (Boolean)val;
       else if ("isObjectEqualsSafe".equals(name) && val instanceof Boolean)
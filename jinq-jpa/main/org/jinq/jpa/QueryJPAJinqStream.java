@@ -1,5 +1,14 @@
 package org.jinq.jpa;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
 import org.jinq.orm.internal.QueryComposer;
 import org.jinq.orm.stream.InQueryStreamSource;
 import org.jinq.orm.stream.JinqStream;
@@ -11,6 +20,7 @@ import org.jinq.tuples.Tuple5;
 import org.jinq.tuples.Tuple6;
 import org.jinq.tuples.Tuple7;
 import org.jinq.tuples.Tuple8;
+import org.reactivestreams.Publisher;
 
 class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<T> 
 {
@@ -104,6 +114,31 @@ class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<
       return new JPAJinqStreamWrapper<>(this).andNotExcept(otherSet);
    }
 
+   @Override
+   public <U> long updateAll(Select<T, U> field, Select<T, U> value)
+   {
+      Long count = jpaComposer.updateAll(new Object[] {field, value});
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).updateAll(field, value);
+   }
+
+   @Override
+   public <U, V> long updateAll(Select<T, U> field1, Select<T, U> value1,
+         Select<T, V> field2, Select<T, V> value2)
+   {
+      Long count = jpaComposer.updateAll(new Object[] {field1, value1, field2, value2});
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).updateAll(field1, value1, field2, value2);
+   }
+
+   @Override
+   public long deleteAll()
+   {
+      Long count = jpaComposer.deleteAll();
+      if (count != null) return count;
+      return new JPAJinqStreamWrapper<>(this).deleteAll();
+   }
+
    // Wrapped versions of old API
    
    @Override
@@ -203,6 +238,13 @@ class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<
    {
       return wrap(super.crossJoin(join));
    }
+
+   @Override
+   public <U, K> JPAJinqStream<Pair<T, U>> hashJoin(Collection<U> joined,
+         Select<T, K> leftKey, Select<U, K> rightKey)
+   {
+      return wrap(super.hashJoin(joined, leftKey, rightKey));
+   }
    
 
    @Override
@@ -322,4 +364,42 @@ class QueryJPAJinqStream<T> extends QueryJinqStream<T> implements JPAJinqStream<
    {
       return wrap(super.setHint(name, value));
    }
+
+   @Override
+   public <U> CompletableFuture<U> executeAsync(
+         Function<? super JPAJinqStream<T>, U> terminal, 
+         EntityManagerFactory factory, Executor executor)
+   {
+      return CompletableFuture.supplyAsync(() -> {
+         // EntityManagers can't be shared between threads, so the query
+         // is run using an EntityManager of its own
+         EntityManager em = factory.createEntityManager();
+         try {
+            return terminal.apply(new QueryJPAJinqStream<>(jpaComposer.withEntityManager(em), inQueryStreamSource));
+         }
+         finally
+         {
+            em.close();
+         }
+      }, executor);
+   }
+
+   @Override
+   public Publisher<T> toPublisher(EntityManagerFactory factory, Executor executor)
+   {
+      return new JPAResultPublisher<>(() -> {
+         EntityManager em = factory.createEntityManager();
+         try {
+            // JPA errors are thrown directly when reading results, so there
+            // is no need to report them separately
+            Iterator<T> results = jpaComposer.withEntityManager(em).executeAndReturnResultIterator(err -> {});
+            return new JPAResultPublisher.ClosingIterator<>(results, em::close);
+         }
+         catch (RuntimeException e)
+         {
+            em.close();
+            throw e;
+         }
+      }, executor);
+   }
 }
@@ -5,11 +5,23 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import jakarta.persistence.EntityGraph;
@@ -21,11 +33,19 @@ import org.jinq.jpa.test.entities.Item;
 import org.jinq.jpa.test.entities.Lineorder;
 import org.jinq.jpa.test.entities.Sale;
 import org.jinq.jpa.test.entities.Supplier;
+import org.jinq.jpa.transform.JPAQueryComposerCache;
+import org.jinq.jpa.transform.LambdaIndex;
+import org.jinq.jpa.transform.LambdaInfo;
 import org.jinq.orm.stream.JinqStream;
 import org.jinq.orm.stream.JinqStream.Where;
 import org.jinq.tuples.Pair;
 import org.junit.Assert;
 import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import ch.epfl.labos.iu.orm.queryll2.path.MethodAnalysisResults;
 
 public class JinqJPATest extends JinqJPATestBase
 {
@@ -57,6 +77,53 @@ public class JinqJPATest extends JinqJPATestBase
       assertEquals("Eve", names.get(4));
    }
 
+   @Test
+   public void testParallelResults()
+   {
+      JPAJinqStream<Customer> stream = streams.streamAll(em, Customer.class)
+            .setHint("parallelResults", true);
+      List<String> names = stream
+            .map(c -> c.getName())
+            .sorted()
+            .collect(Collectors.toList());
+      assertTrue(stream.isParallel());
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), names);
+      assertFalse(streams.streamAll(em, Customer.class).isParallel());
+   }
+
+   @Test
+   public void testStreamPagesKeyset()
+   {
+      List<String> names = streams.streamAll(em, Customer.class)
+            .setHint("automaticPageSize", 2)
+            .setHint("automaticPageKeyset", true)
+            .select(c -> c.getName() )
+            .toList();
+      assertEquals("SELECT A.name, A.customerid FROM Customer A WHERE A.customerid > :jinqKeysetLastKey ORDER BY A.customerid ASC", query);
+      names = names.stream().sorted().collect(Collectors.toList());
+      assertEquals(5, names.size());
+      assertEquals("Alice", names.get(0));
+      assertEquals("Bob", names.get(1));
+      assertEquals("Carol", names.get(2));
+      assertEquals("Dave", names.get(3));
+      assertEquals("Eve", names.get(4));
+   }
+
+   @Test
+   public void testStreamPagesKeysetWhereLimit()
+   {
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .setHint("automaticPageSize", 1)
+            .setHint("automaticPageKeyset", true)
+            .where(c -> c.getDebt() < 250)
+            .skip(1)
+            .limit(2)
+            .toList();
+      assertEquals("SELECT A, A.customerid FROM Customer A WHERE A.debt < 250 AND A.customerid > :jinqKeysetLastKey ORDER BY A.customerid ASC", query);
+      assertEquals(2, customers.size());
+      assertTrue(customers.get(0).getCustomerid() < customers.get(1).getCustomerid());
+   }
+
    // EclipseLink requires weaving to be set-up to handle entity graphs.
    // I can't figure out how to do dynamic weaving under Maven. Though I
    // *do* have the code for static weaving in Maven, I don't feel like 
@@ -97,6 +164,400 @@ public class JinqJPATest extends JinqJPATestBase
       fail();
    }
    
+   private static boolean isShortName(String name)
+   {
+      return name.length() <= 3;
+   }
+   
+   @Test
+   public void testUpdateAll()
+   {
+      int extra = 10;
+      long updated = streams.streamAll(em, Customer.class)
+            .where(c -> c.getCountry().equals("Switzerland"))
+            .updateAll(c -> c.getDebt(), c -> c.getDebt() + extra);
+      assertEquals("UPDATE Customer A SET A.debt = A.debt + :param0 WHERE A.country = 'Switzerland'", query);
+      assertEquals(2, updated);
+      List<Integer> debts = streams.streamAll(em, Customer.class)
+            .where(c -> c.getCountry().equals("Switzerland"))
+            .select(c -> c.getDebt())
+            .sortedBy(debt -> debt)
+            .toList();
+      assertEquals(Arrays.asList(110, 210), debts);
+   }
+   
+   @Test
+   public void testUpdateAllTwoFields()
+   {
+      long updated = streams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Eve"))
+            .updateAll(c -> c.getDebt(), c -> 0, c -> c.getSalary(), c -> c.getSalary() * 2);
+      assertEquals("UPDATE Customer A SET A.debt = 0, A.salary = A.salary * 2 WHERE A.name = 'Eve'", query);
+      assertEquals(1, updated);
+      Pair<Integer, Integer> eve = streams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Eve"))
+            .select(c -> new Pair<>(c.getDebt(), c.getSalary()))
+            .getOnlyValue();
+      assertEquals(0, (int)eve.getOne());
+      assertEquals(60, (int)eve.getTwo());
+   }
+   
+   @Test
+   public void testDeleteAll()
+   {
+      long deleted = streams.streamAll(em, Lineorder.class)
+            .where(lo -> lo.getQuantity() >= 100)
+            .sortedBy(lo -> lo.getQuantity())
+            .deleteAll();
+      assertEquals("DELETE FROM Lineorder A WHERE A.quantity >= 100", query);
+      assertEquals(2, deleted);
+      assertEquals(0, streams.streamAll(em, Lineorder.class)
+            .where(lo -> lo.getQuantity() >= 100)
+            .count());
+   }
+   
+   @Test(expected=IllegalArgumentException.class)
+   public void testUpdateAllNotEntity()
+   {
+      streams.streamAll(em, Customer.class)
+            .select(c -> c.getName())
+            .updateAll(name -> name, name -> "Anonymous");
+   }
+   
+   @Test
+   public void testPartialWhere()
+   {
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .setHint("exceptionOnTranslationFail", false)
+            .where(c -> c.getDebt() >= 100 && isShortName(c.getName()))
+            .toList();
+      assertEquals("SELECT A FROM Customer A WHERE A.debt >= 100", query);
+      assertEquals(1, customers.size());
+      assertEquals("Bob", customers.get(0).getName());
+      
+      customers = streams.streamAll(em, Customer.class)
+            .setHint("exceptionOnTranslationFail", false)
+            .setHint("partialWhere", false)
+            .where(c -> c.getDebt() >= 100 && isShortName(c.getName()))
+            .toList();
+      assertEquals("SELECT A FROM Customer A", query);
+      assertEquals(1, customers.size());
+   }
+   
+   @Test
+   public void testAsyncQueries() throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         CompletableFuture<List<String>> names = streams.streamAll(em, Customer.class)
+               .where(c -> c.getDebt() > 150)
+               .select(c -> c.getName())
+               .toListAsync(entityManagerFactory, executor);
+         CompletableFuture<Long> debt = streams.streamAll(em, Customer.class)
+               .executeAsync(s -> s.sumInteger(c -> c.getDebt()), entityManagerFactory, executor);
+         CompletableFuture<Long> count = streams.streamAll(em, Customer.class)
+               .where(c -> c.getDebt() < 150)
+               .countAsync(entityManagerFactory);
+         CompletableFuture<Optional<Customer>> customer = streams.streamAll(em, Customer.class)
+               .where(c -> c.getName().equals("Alice"))
+               .findOneAsync(entityManagerFactory);
+         List<String> nameList = new ArrayList<>(names.get());
+         Collections.sort(nameList);
+         assertEquals(Arrays.asList("Bob", "Carol"), nameList);
+         assertEquals(710, (long)debt.get());
+         assertEquals(3, (long)count.get());
+         assertEquals("Alice", customer.get().get().getName());
+         // The query was run with a different EntityManager
+         assertFalse(em.contains(customer.get().get()));
+         // Streams that aren't queries use the EntityManager of the 
+         // original stream, so they are run on the calling thread
+         CompletableFuture<Long> shortNames = streams.streamAll(em, Customer.class)
+               .setHint("exceptionOnTranslationFail", false)
+               .setHint("partialWhere", false)
+               .where(c -> isShortName(c.getName()))
+               .countAsync(entityManagerFactory, executor);
+         assertTrue(shortNames.isDone());
+         assertEquals(2, (long)shortNames.get());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+   
+   @Test
+   public void testPublisher() throws Exception
+   {
+      Publisher<String> publisher = streams.streamAll(em, Customer.class)
+            .setHint("automaticPageSize", 2)
+            .sortedBy(c -> c.getName())
+            .select(c -> c.getName())
+            .toPublisher(entityManagerFactory);
+      
+      // Request results one at a time
+      List<String> names = Collections.synchronizedList(new ArrayList<>());
+      CompletableFuture<Void> done = new CompletableFuture<>();
+      publisher.subscribe(new Subscriber<String>() {
+         Subscription subscription;
+         @Override public void onSubscribe(Subscription s)
+         {
+            subscription = s;
+            s.request(1);
+         }
+         @Override public void onNext(String name)
+         {
+            names.add(name);
+            subscription.request(1);
+         }
+         @Override public void onError(Throwable t) { done.completeExceptionally(t); }
+         @Override public void onComplete() { done.complete(null); }
+      });
+      done.get();
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), names);
+      
+      // Cancel after receiving some of the results
+      List<String> partialNames = Collections.synchronizedList(new ArrayList<>());
+      CompletableFuture<Void> cancelled = new CompletableFuture<>();
+      publisher.subscribe(new Subscriber<String>() {
+         Subscription subscription;
+         @Override public void onSubscribe(Subscription s)
+         {
+            subscription = s;
+            s.request(3);
+         }
+         @Override public void onNext(String name)
+         {
+            partialNames.add(name);
+            if (partialNames.size() == 2)
+            {
+               subscription.cancel();
+               cancelled.complete(null);
+            }
+         }
+         @Override public void onError(Throwable t) { cancelled.completeExceptionally(t); }
+         @Override public void onComplete() { cancelled.completeExceptionally(new AssertionError("Not cancelled")); }
+      });
+      cancelled.get();
+      assertEquals(Arrays.asList("Alice", "Bob"), partialNames);
+   }
+   
+   @Test
+   public void testPublisherBrokenSubscriber()
+   {
+      // Results are sent on the calling thread so that everything has
+      // been sent by the time subscribe() returns
+      List<String> events = new ArrayList<>();
+      Publisher<String> publisher = new JPAResultPublisher<>(
+            () -> new JPAResultPublisher.ClosingIterator<>(
+                  Arrays.asList("Alice", "Bob", "Carol").iterator(),
+                  () -> events.add("close")),
+            Runnable::run);
+      publisher.subscribe(new Subscriber<String>() {
+         @Override public void onSubscribe(Subscription s)
+         {
+            s.request(3);
+            events.add("subscribed");
+         }
+         @Override public void onNext(String name)
+         {
+            events.add(name);
+            throw new IllegalStateException();
+         }
+         @Override public void onError(Throwable t) { events.add("error"); }
+         @Override public void onComplete() { events.add("complete"); }
+      });
+      assertEquals(Arrays.asList("subscribed", "Alice", "close"), events);
+   }
+   
+   @Test
+   public void testResultCache()
+   {
+      JPAResultCache cache = new JPAResultCache(1, TimeUnit.HOURS);
+      int minDebt = 150;
+      List<String> names = streams.streamAll(em, Customer.class)
+            .setHint("resultCache", cache)
+            .where(c -> c.getDebt() > minDebt)
+            .select(c -> c.getName())
+            .sortedBy(name -> name)
+            .toList();
+      assertEquals(Arrays.asList("Bob", "Carol"), names);
+      assertEquals(1, cache.size());
+      
+      // Running the same query again reads the results from the cache
+      streams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Alice"))
+            .getOnlyValue()
+            .setDebt(500);
+      em.flush();
+      query = null;
+      names = streams.streamAll(em, Customer.class)
+            .setHint("resultCache", cache)
+            .where(c -> c.getDebt() > minDebt)
+            .select(c -> c.getName())
+            .sortedBy(name -> name)
+            .toList();
+      assertEquals(Arrays.asList("Bob", "Carol"), names);
+      assertEquals(null, query);
+      
+      // Different parameters are cached separately
+      int otherDebt = 250;
+      assertEquals(2, (long)streams.streamAll(em, Customer.class)
+            .setHint("resultCache", cache)
+            .where(c -> c.getDebt() > otherDebt)
+            .count());
+      assertEquals(2, cache.size());
+
+      // Results of queries that navigate to customers also depend on them
+      List<String> saleCustomers = streams.streamAll(em, Sale.class)
+            .setHint("resultCache", cache)
+            .where(s -> s.getSaleid() == 1)
+            .select(s -> s.getCustomer().getName())
+            .toList();
+      assertEquals(1, saleCustomers.size());
+      assertEquals(3, cache.size());
+      
+      // Queries that return entities are not cached, so they see the 
+      // changed debt
+      assertEquals(3, streams.streamAll(em, Customer.class)
+            .setHint("resultCache", cache)
+            .where(c -> c.getDebt() > minDebt)
+            .toList().size());
+      assertEquals(2, streams.streamAll(em, Sale.class)
+            .setHint("resultCache", cache)
+            .where(s -> s.getSaleid() <= 2)
+            .select(s -> s.getCustomer())
+            .toList().size());
+      assertEquals(3, cache.size());
+      cache.invalidate(Item.class);
+      assertEquals(3, cache.size());
+      
+      // Invalidating the entity discards the old results
+      cache.invalidate(Customer.class);
+      assertEquals(0, cache.size());
+      names = streams.streamAll(em, Customer.class)
+            .setHint("resultCache", cache)
+            .where(c -> c.getDebt() > minDebt)
+            .select(c -> c.getName())
+            .sortedBy(name -> name)
+            .toList();
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol"), names);
+   }
+   
+   @Test
+   public void testNamedQueries()
+   {
+      int registeredBefore = streams.namedQueries.getRegisteredQueryCount(em.getEntityManagerFactory());
+      for (int debt: new int[] {150, 250})
+      {
+         List<String> names = streams.streamAll(em, Customer.class)
+               .setHint("useNamedQueries", true)
+               .setHint("automaticPageSize", 1)
+               .where(c -> c.getDebt() > debt)
+               .select(c -> c.getName())
+               .toList();
+         Collections.sort(names);
+         assertEquals(debt == 150 ? Arrays.asList("Bob", "Carol") : Arrays.asList("Carol"), names);
+      }
+      // Both queries only differ in their parameters, so they share the same named query
+      assertEquals(registeredBefore + 1, streams.namedQueries.getRegisteredQueryCount(em.getEntityManagerFactory()));
+      assertEquals("SELECT A.name FROM Customer A WHERE A.debt > :param0", query);
+   }
+   
+   @Test
+   public void testHashJoin()
+   {
+      List<Pair<Customer, String>> results = streams.streamAll(em, Customer.class)
+            .where(c -> c.getDebt() > 150)
+            .hashJoin(Arrays.asList("Bob", "Dave"), c -> c.getName(), name -> name)
+            .toList();
+      assertEquals(1, results.size());
+      assertEquals("Bob", results.get(0).getOne().getName());
+   }
+   
+   @Test
+   public void testNamedQueriesLimit()
+   {
+      JPANamedQueryRegistry namedQueries = new JPANamedQueryRegistry(1);
+      assertEquals(5, namedQueries.createQuery(em, "SELECT A FROM Customer A").getResultList().size());
+      // Past the limit, queries are still created but aren't registered
+      assertEquals(5, namedQueries.createQuery(em, "SELECT A.name FROM Customer A").getResultList().size());
+      assertEquals(1, namedQueries.getRegisteredQueryCount(em.getEntityManagerFactory()));
+   }
+   
+   @Test
+   public void testNamedQueriesSeveralProviders()
+   {
+      // Both providers register queries with the same EntityManagerFactory
+      JinqJPAStreamProvider streams = new JinqJPAStreamProvider(entityManagerFactory);
+      streams.setHint("useNamedQueries", true);
+      JinqJPAStreamProvider otherStreams = new JinqJPAStreamProvider(entityManagerFactory);
+      otherStreams.setHint("useNamedQueries", true);
+      List<String> names = streams.streamAll(em, Customer.class)
+            .where(c -> c.getDebt() > 250)
+            .select(c -> c.getName())
+            .toList();
+      List<String> countries = otherStreams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Alice"))
+            .select(c -> c.getCountry())
+            .toList();
+      // Run the queries again so that both use their registered names
+      assertEquals(names, streams.streamAll(em, Customer.class)
+            .where(c -> c.getDebt() > 250)
+            .select(c -> c.getName())
+            .toList());
+      assertEquals(countries, otherStreams.streamAll(em, Customer.class)
+            .where(c -> c.getName().equals("Alice"))
+            .select(c -> c.getCountry())
+            .toList());
+      assertEquals(Arrays.asList("Carol"), names);
+      assertEquals(Arrays.asList("Switzerland"), countries);
+   }
+   
+   @Test
+   public void testQueryMetrics()
+   {
+      List<JPAQueryMetrics.Stage> stages = new ArrayList<>();
+      List<Boolean> cacheLookups = new ArrayList<>();
+      List<Throwable> failures = new ArrayList<>();
+      JPAQueryMetrics metrics = new JPAQueryMetrics() {
+         @Override public void recordTiming(Stage stage, long nanos)
+         {
+            assertTrue(nanos >= 0);
+            stages.add(stage);
+         }
+         @Override public void recordCacheLookup(boolean hit) { cacheLookups.add(hit); }
+         @Override public void recordTranslationFailure(Throwable cause) { failures.add(cause); }
+      };
+      for (int n = 0; n < 2; n++)
+      {
+         List<String> names = streams.streamAll(em, Customer.class)
+               .setHint("queryMetrics", metrics)
+               .where(c -> c.getDebt() > 150)
+               .select(c -> c.getName())
+               .toList();
+         Collections.sort(names);
+         assertEquals(Arrays.asList("Bob", "Carol"), names);
+      }
+      // The second time, the query is found in the cache, so the lambdas
+      // are not analyzed again 
+      assertEquals(Arrays.asList(false, false, true, true), cacheLookups);
+      assertEquals(2, Collections.frequency(stages, JPAQueryMetrics.Stage.LAMBDA_ANALYSIS));
+      assertEquals(2, Collections.frequency(stages, JPAQueryMetrics.Stage.TRANSFORM));
+      assertEquals(4, Collections.frequency(stages, JPAQueryMetrics.Stage.LAMBDA_EXTRACTION));
+      assertEquals(2, Collections.frequency(stages, JPAQueryMetrics.Stage.QUERY_GENERATION));
+      assertEquals(2, Collections.frequency(stages, JPAQueryMetrics.Stage.CREATE_QUERY));
+      assertEquals(2, Collections.frequency(stages, JPAQueryMetrics.Stage.FETCH_PAGE));
+      assertEquals(4, Collections.frequency(stages, JPAQueryMetrics.Stage.ROW_DECODING));
+      assertTrue(failures.isEmpty());
+      
+      streams.streamAll(em, Customer.class)
+            .setHint("queryMetrics", metrics)
+            .setHint("exceptionOnTranslationFail", false)
+            .select(c -> {externalMethod(); return "blank";} )
+            .toList();
+      assertEquals(1, failures.size());
+   }
+   
    @Test
    public void testJoinNMLink()
    {
@@ -389,6 +850,39 @@ public class JinqJPATest extends JinqJPATestBase
       assertEquals("Bob", results.get(0).getName());
       assertEquals("Carol", results.get(1).getName());
    }
+
+   @Test
+   public void testLimitSkipPagesShareCachedQuery()
+   {
+      JPAQueryComposerCache cache = streams.getQueryCache();
+      List<String> names = new ArrayList<>();
+      long cacheSize = 0;
+      for (int page = 0; page < 3; page++)
+      {
+         names.addAll(streams.streamAll(em, Customer.class)
+               .sortedBy(c -> c.getName())
+               .skip(page * 2)
+               .limit(2)
+               .toList().stream()
+               .map(c -> c.getName())
+               .collect(Collectors.toList()));
+         if (page == 0)
+            cacheSize = cache.size();
+      }
+      assertEquals(cacheSize, cache.size());
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), names);
+   }
+
+   @Test
+   public void testLimitSkipPastLimit()
+   {
+      List<Customer> results = streams.streamAll(em, Customer.class)
+            .sortedBy(c -> c.getName())
+            .limit(2)
+            .skip(3)
+            .toList();
+      assertEquals(0, results.size());
+   }
    
    @Test
    public void testFindFirst()
@@ -405,9 +899,11 @@ public class JinqJPATest extends JinqJPATestBase
       assertFalse(french.isPresent());
    }
 
-   @Test(expected=IllegalArgumentException.class)
+   @Test
    public void testTooManyPaths()
    {
+      // There are too many paths to analyze separately, so paths are 
+      // merged where they come back together
       List<Customer> results = streams.streamAll(em, Customer.class)
             .where(c -> (c.getName().equals("Alice") && c.getSalary() == 5)
                   || (c.getName().equals("Bob") && c.getSalary() == 6)
@@ -418,6 +914,8 @@ public class JinqJPATest extends JinqJPATestBase
                   || (c.getName().equals("Bob") && c.getSalary() == 11)
                   || (c.getName().equals("Carol") && c.getSalary() == 12))
             .toList();
+      assertEquals("SELECT A FROM Customer A WHERE A.name = 'Alice' AND A.salary = 5 OR (A.name <> 'Alice' OR A.salary <> 5) AND A.name = 'Bob' AND A.salary = 6 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND A.name = 'Dave' AND A.salary = 7 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND A.name = 'Eve' AND A.salary = 8 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND A.name = 'Carol' AND A.salary = 9 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND A.name = 'Alice' AND A.salary = 10 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND (A.name <> 'Alice' OR A.salary <> 10) AND A.name = 'Bob' AND A.salary = 11 OR (A.name <> 'Alice' OR A.salary <> 5) AND (A.name <> 'Bob' OR A.salary <> 6) AND (A.name <> 'Dave' OR A.salary <> 7) AND (A.name <> 'Eve' OR A.salary <> 8) AND (A.name <> 'Carol' OR A.salary <> 9) AND (A.name <> 'Alice' OR A.salary <> 10) AND (A.name <> 'Bob' OR A.salary <> 11) AND A.name = 'Carol' AND A.salary = 12", query);
+      assertEquals(0, results.size());
    }
    
    @Test
@@ -427,7 +925,7 @@ public class JinqJPATest extends JinqJPATestBase
       streams.streamAll(em, Customer.class);
       // Create a query composer for finding all customers.
       Optional<JPQLQuery<?>> cachedQuery = streams.cachedQueries.findCachedFindAllEntities("Customer");
-      JPAQueryComposer<Customer> composer = JPAQueryComposer.findAllEntities(streams.metamodel, streams.cachedQueries, streams.lambdaAnalyzer, streams.jpqlQueryTransformConfigurationFactory, em, streams.hints, (JPQLQuery<Customer>)cachedQuery.get());
+      JPAQueryComposer<Customer> composer = JPAQueryComposer.findAllEntities(streams.metamodel, streams.cachedQueries, streams.namedQueries, streams.lambdaAnalyzer, streams.jpqlQueryTransformConfigurationFactory, em, streams.hints, (JPQLQuery<Customer>)cachedQuery.get());
       // Apply a where restriction to it
       JPAQueryComposer<Customer> where1 = repeatedQuery(composer, 1);
       JPAQueryComposer<Customer> where2 = repeatedQuery(composer, 2);
@@ -437,6 +935,104 @@ public class JinqJPATest extends JinqJPATestBase
       assertTrue(where2.query == where3.query);
    }
    
+   @Test
+   public void testCacheStatistics()
+   {
+      JPAQueryComposerCache cache = streams.getQueryCache();
+      long hits = cache.getHitCount();
+      for (int n = 0; n < 2; n++)
+         streams.streamAll(em, Customer.class)
+               .where(c -> c.getName().equals("Alice"))
+               .toList();
+      assertTrue(cache.getHitCount() > hits);
+   }
+   
+   @Test
+   public void testCacheEviction()
+   {
+      JPAQueryComposerCache cache = new JPAQueryComposerCache(10);
+      JPQLQuery<?> base = JPQLQuery.findAllEntities("Customer");
+      for (int n = 0; n < 20; n++)
+         cache.cacheQuery(base, "transform" + n, null, Optional.of(base));
+      assertTrue(cache.size() <= 10);
+      assertTrue(cache.getEvictionCount() >= 10);
+      assertTrue(cache.findInCache(base, "transform19", null) != null);
+      assertTrue(cache.findInCache(base, "transform0", null) == null);
+   }
+   
+   private List<Pair<String, Integer>> customersWithDebt(JinqJPAStreamProvider provider, int debt)
+   {
+      return provider.streamAll(em, Customer.class)
+            .where(c -> c.getDebt() >= debt)
+            .sortedBy(c -> c.getName())
+            .select(c -> new Pair<>(c.getName(), c.getDebt()))
+            .toList();
+   }
+   
+   @Test
+   public void testQueryCacheSnapshot() throws IOException
+   {
+      List<Pair<String, Integer>> expected = customersWithDebt(streams, 200);
+      ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+      assertTrue(streams.exportQueryCache(snapshot) > 0);
+      
+      JinqJPAStreamProvider restarted = new JinqJPAStreamProvider(entityManagerFactory);
+      assertTrue(restarted.importQueryCache(new ByteArrayInputStream(snapshot.toByteArray())) > 0);
+      JPAQueryComposerCache cache = restarted.getQueryCache();
+      List<Pair<String, Integer>> results = customersWithDebt(restarted, 200);
+      assertEquals(expected, results);
+      assertEquals(0, cache.getMissCount());
+      assertEquals(3, cache.getHitCount());
+      assertEquals(Arrays.asList(new Pair<>("Bob", 200), new Pair<>("Carol", 300)), results);
+   }
+   
+   @Test
+   public void testLambdaAnalysisCaching()
+   {
+      Where<Customer, Exception> filter = c -> c.getName().equals("Alice");
+      String lambdaSource = LambdaInfo.analyze(filter, 0, true).getLambdaSourceString();
+      streams.streamAll(em, Customer.class)
+            .where(filter)
+            .toList();
+      MethodAnalysisResults analysis = streams.metamodel.getLambdaAnalysisCache().findInCache(lambdaSource, true, true, true);
+      assertTrue(analysis != null);
+      // Using the same lambda with a different base query should reuse the analysis
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .sortedBy(c -> c.getName())
+            .where(filter)
+            .toList();
+      assertEquals(1, customers.size());
+      assertTrue(analysis == streams.metamodel.getLambdaAnalysisCache().findInCache(lambdaSource, true, true, true));
+   }
+   
+   @Test
+   public void testAnalyzeLambdasFromIndex() throws IOException
+   {
+      Where<Customer, Exception> filter = c -> c.getDebt() < 50;
+      String lambdaSource = LambdaInfo.analyze(filter, 0, true).getLambdaSourceString();
+      List<String> lambdas = new ArrayList<>();
+      try (InputStream in = JinqJPATest.class.getResourceAsStream("JinqJPATest.class"))
+      {
+         LambdaIndex.findLambdas(in, lambdas);
+      }
+      assertTrue(lambdas.contains(lambdaSource));
+      StringWriter index = new StringWriter();
+      LambdaIndex.writeIndex(lambdas, index);
+      assertEquals(lambdas, LambdaIndex.readIndex(new StringReader(index.toString())));
+      
+      // Analyzing the lambda ahead of time should put its analysis in the cache
+      assertTrue(streams.metamodel.getLambdaAnalysisCache().findInCache(lambdaSource, true, true, true) == null);
+      assertEquals(1, streams.analyzeLambdas(Collections.singletonList(lambdaSource)));
+      MethodAnalysisResults analysis = streams.metamodel.getLambdaAnalysisCache().findInCache(lambdaSource, true, true, true);
+      assertTrue(analysis != null);
+      List<Customer> customers = streams.streamAll(em, Customer.class)
+            .where(filter)
+            .toList();
+      assertEquals(1, customers.size());
+      assertEquals("Eve", customers.get(0).getName());
+      assertTrue(analysis == streams.metamodel.getLambdaAnalysisCache().findInCache(lambdaSource, true, true, true));
+   }
+   
    @Test
    public void testCachingSort()
    {
@@ -2,6 +2,7 @@ package org.jinq.jpa;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
@@ -91,6 +92,86 @@ public class JinqJPAWhereTest extends JinqJPATestBase
       Assert.assertTrue(customers.contains("Bob"));
    }
 
+   @Test
+   public void testWhereManyOptionalFilters()
+   {
+      // Lambdas with many optional filters have too many paths to analyze
+      // separately, so paths are merged where they come back together.
+      assertEquals(Arrays.asList("Bob"), 
+            customersWithOptionalFilters(null, "Switzerland", "UK", 150, null, null, 400));
+      assertEquals("SELECT A.name FROM Customer A WHERE (:param0 IS NULL OR A.name = :param1) AND (:param2 IS NULL OR A.country = :param3) AND (:param4 IS NULL OR A.country <> :param5) AND (:param6 IS NULL OR A.debt >= :param7) AND (:param8 IS NULL OR A.debt <= :param9) AND (:param10 IS NULL OR A.salary >= :param11) AND (:param12 IS NULL OR A.salary <= :param13) ORDER BY A.name ASC", query);
+      assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), 
+            customersWithOptionalFilters(null, null, null, null, null, null, null));
+      assertEquals(Arrays.asList("Carol"), 
+            customersWithOptionalFilters("Carol", null, null, null, null, null, null));
+      assertEquals(Arrays.asList("Bob", "Dave"), 
+            customersWithOptionalFilters(null, null, "Canada", null, 200, 250, null));
+   }
+
+   private List<String> customersWithOptionalFilters(String name, String country, String otherCountry, 
+         Integer minDebt, Integer maxDebt, Integer minSalary, Integer maxSalary)
+   {
+      return streams.streamAll(em, Customer.class)
+            .where(c -> (name == null || c.getName().equals(name))
+                  && (country == null || c.getCountry().equals(country))
+                  && (otherCountry == null || !c.getCountry().equals(otherCountry))
+                  && (minDebt == null || c.getDebt() >= minDebt)
+                  && (maxDebt == null || c.getDebt() <= maxDebt)
+                  && (minSalary == null || c.getSalary() >= minSalary)
+                  && (maxSalary == null || c.getSalary() <= maxSalary))
+            .sortedBy(c -> c.getName())
+            .select(c -> c.getName())
+            .toList();
+   }
+
+   @Test
+   public void testWhereSwitch()
+   {
+      List<String> customers = streams.streamAll(em, Customer.class)
+            .where(c -> {
+               switch (c.getDebt())
+               {
+                  case 100:
+                  case 300:
+                     return true;
+                  default:
+                     return false;
+               }
+            })
+            .select(c -> c.getName())
+            .sortedBy(name -> name)
+            .toList();
+      assertEquals("SELECT A.name FROM Customer A WHERE A.debt = 100 OR A.debt = 300 ORDER BY A.name ASC", query);
+      assertEquals(3, customers.size());
+      assertEquals("Alice", customers.get(0));
+      assertEquals("Carol", customers.get(1));
+      assertEquals("Dave", customers.get(2));
+   }
+
+   @Test
+   public void testWhereSwitchEnum()
+   {
+      List<String> items = streams.streamAll(em, Item.class)
+            .where(i -> {
+               switch (i.getType())
+               {
+                  case SMALL:
+                     return i.getSaleprice() > 5;
+                  case BIG:
+                     return true;
+                  default:
+                     return false;
+               }
+            })
+            .select(i -> i.getName())
+            .sortedBy(name -> name)
+            .toList();
+      assertEquals("SELECT A.name FROM Item A WHERE A.type = org.jinq.jpa.test.entities.ItemType.SMALL AND A.saleprice > 5.0 OR A.type = org.jinq.jpa.test.entities.ItemType.BIG ORDER BY A.name ASC", query);
+      assertEquals(2, items.size());
+      assertEquals("Lawnmowers", items.get(0));
+      assertEquals("Widgets", items.get(1));
+   }
+
    @Test
    public void testWhereAndOr()
    {